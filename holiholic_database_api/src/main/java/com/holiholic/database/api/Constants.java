@@ -2,4 +2,11 @@ package com.holiholic.database.api;
 
 class Constants {
     final static String CREDENTIALS_CONFIG_PATH = System.getProperty("user.dir") + "/db_credentials.json";
+
+    // threads and queue sizes of the updates by workload (-Ddatabase.persistenceThreads etc.)
+    final static int PERSISTENCE_THREADS = Integer.getInteger("database.persistenceThreads",
+                                                              Runtime.getRuntime().availableProcessors());
+    final static int PERSISTENCE_QUEUE_SIZE = Integer.getInteger("database.persistenceQueueSize", 10000);
+    final static int BATCH_THREADS = Integer.getInteger("database.batchThreads", 1);
+    final static int BATCH_QUEUE_SIZE = Integer.getInteger("database.batchQueueSize", 10000);
 }
@@ -38,17 +38,21 @@ public class Query {
     }
 
     public static void insert(String tableName, List<String> values) {
+        insert(tableName, values, Workload.PERSISTENCE);
+    }
+
+    public static void insert(String tableName, List<String> values, Workload workload) {
         if (tableName == null || tableName.isEmpty() || values == null || values.isEmpty()) {
             return;
         }
 
         String query = "INSERT INTO " + tableName + " VALUES (" + serialize(values, ",") + ");";
 
-        ThreadManager.getInstance().addTask(new QueryUpdateTask(query));
+        ThreadManager.getInstance().addTask(new QueryUpdateTask(query), workload);
     }
 
     public static void insert(String statement) {
-        ThreadManager.getInstance().addTask(new QueryUpdateTask(statement));
+        ThreadManager.getInstance().addTask(new QueryUpdateTask(statement), Workload.PERSISTENCE);
     }
 
     public static void update(String tableName, Map<String, String> attributes, List<DatabasePredicate> predicates) {
@@ -60,25 +64,42 @@ public class Query {
 
         String query = "UPDATE " + tableName + " SET " + serialize(attributes) + " WHERE " + serialize(predicates, "AND") + ";";
 
-        ThreadManager.getInstance().addTask(new QueryUpdateTask(query));
+        ThreadManager.getInstance().addTask(new QueryUpdateTask(query), Workload.PERSISTENCE);
     }
 
     public static void update(String statement) {
-        ThreadManager.getInstance().addTask(new QueryUpdateTask(statement));
+        ThreadManager.getInstance().addTask(new QueryUpdateTask(statement), Workload.PERSISTENCE);
     }
 
     public static void delete(String tableName, List<DatabasePredicate> predicates) {
+        delete(tableName, predicates, Workload.PERSISTENCE);
+    }
+
+    public static void delete(String tableName, List<DatabasePredicate> predicates, Workload workload) {
         if (tableName == null || tableName.isEmpty() || predicates == null || predicates.isEmpty()) {
             return;
         }
 
         String query = "DELETE FROM " + tableName + " WHERE " + serialize(predicates, "AND") + ";";
 
-        ThreadManager.getInstance().addTask(new QueryUpdateTask(query));
+        ThreadManager.getInstance().addTask(new QueryUpdateTask(query), workload);
     }
 
     public static void delete(String statement) {
-        ThreadManager.getInstance().addTask(new QueryUpdateTask(statement));
+        ThreadManager.getInstance().addTask(new QueryUpdateTask(statement), Workload.PERSISTENCE);
+    }
+
+    // the saturation of the threads running the updates of a workload
+    public static int getQueuedTasks(Workload workload) {
+        return ThreadManager.getInstance().getQueuedTasks(workload);
+    }
+
+    public static int getActiveTasks(Workload workload) {
+        return ThreadManager.getInstance().getActiveTasks(workload);
+    }
+
+    public static long getRejectedTasks(Workload workload) {
+        return ThreadManager.getInstance().getRejectedTasks(workload);
     }
 
     private static String serialize(Map<String, String> attributes) {
@@ -1,21 +1,67 @@
 package com.holiholic.database.api;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 class ThreadManager {
     private static ThreadManager instance;
-    private static ThreadPoolExecutor executor;
+    private final Map<Workload, ThreadPoolExecutor> executors = new EnumMap<>(Workload.class);
+    private final Map<Workload, AtomicLong> rejections = new EnumMap<>(Workload.class);
 
     private ThreadManager() {
-        int numberOfCores = Runtime.getRuntime().availableProcessors();
-        executor = new ThreadPoolExecutor(
-                numberOfCores,
-                numberOfCores,
+        // when the queue is full the caller runs the update, which slows down the one producing too many of them
+        addExecutor(Workload.PERSISTENCE, Constants.PERSISTENCE_THREADS, Constants.PERSISTENCE_QUEUE_SIZE,
+                new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+                        if (!pool.isShutdown()) {
+                            task.run();
+                        }
+                    }
+                });
+        // one thread by default, so the updates of a batch job run in order, when the queue is full the producer
+        // waits for a free slot instead of running the update itself ahead of the queued ones
+        addExecutor(Workload.BATCH, Constants.BATCH_THREADS, Constants.BATCH_QUEUE_SIZE,
+                new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+                        if (pool.isShutdown()) {
+                            return;
+                        }
+                        try {
+                            pool.getQueue().put(task);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException(e);
+                        }
+                    }
+                });
+    }
+
+    private void addExecutor(Workload workload, int threads, int queueSize, final RejectedExecutionHandler handler) {
+        final AtomicLong rejected = new AtomicLong();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
                 0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<Runnable>());
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+                new ArrayBlockingQueue<Runnable>(queueSize));
+        // counts the updates submitted while the queue was full, then lets the handler of the workload take them
+        executor.setRejectedExecutionHandler(new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+                rejected.incrementAndGet();
+                handler.rejectedExecution(task, pool);
+            }
+        });
+
+        executors.put(workload, executor);
+        rejections.put(workload, rejected);
     }
 
     static ThreadManager getInstance() {
@@ -30,7 +76,19 @@ class ThreadManager {
         return instance;
     }
 
-    void addTask(Runnable task) {
-        executor.execute(task);
+    void addTask(Runnable task, Workload workload) {
+        executors.get(workload).execute(task);
+    }
+
+    int getQueuedTasks(Workload workload) {
+        return executors.get(workload).getQueue().size();
+    }
+
+    int getActiveTasks(Workload workload) {
+        return executors.get(workload).getActiveCount();
+    }
+
+    long getRejectedTasks(Workload workload) {
+        return rejections.get(workload).get();
     }
 }
@@ -0,0 +1,6 @@
+package com.holiholic.database.api;
+
+// the updates of each workload run on their own threads, so the batch jobs can not delay the other ones
+public enum Workload {
+    PERSISTENCE, BATCH
+}
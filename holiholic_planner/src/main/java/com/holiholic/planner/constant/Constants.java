@@ -30,6 +30,73 @@ public class Constants {
     public final static double WALKING_ADJUST_COEFFICIENT = 2.0;
     public final static double ESTIMATED_DRIVING_VELOCITY = 20;     // in kilometers / hour
     public final static double ESTIMATED_WALKING_VELOCITY = 6;
+    // below this number of places the rewards are generated on the calling thread
+    public final static int PARALLEL_REWARDS_MIN_PLACES = 16;
+    // the in place search splits the subtrees in fork/join tasks only up to this number of places in the solution
+    public final static int PLANNER_SPLIT_MAX_DEPTH = 4;
+    // and only while the worker has fewer queued tasks than this (more than the idle workers could steal)
+    public final static int PLANNER_SPLIT_MAX_SURPLUS = 2;
+    // a greedy dive of the warm start gives up after this number of nodes (it backtracks only from dead ends)
+    public final static int WARM_START_MAX_NODES = 10000;
+    // the in place search checks if the time is up once every this number of nodes (a power of 2)
+    public final static int SEARCH_CHECK_INTERVAL = 1024;
+    // the number of plan requests planned at the same time (-Dplanner.parallelism)
+    public final static int PLANNER_PARALLELISM = Integer.getInteger("planner.parallelism",
+                                                                     Runtime.getRuntime().availableProcessors());
+    // the number of plan requests waiting for a thread, the next ones are rejected (-Dplanner.queueSize)
+    public final static int PLANNER_QUEUE_SIZE = Integer.getInteger("planner.queueSize", 4 * PLANNER_PARALLELISM);
+    // the threads saving the plans in the background and the number of plans waiting for them
+    public final static int PERSISTENCE_THREADS = Integer.getInteger("planner.persistenceThreads", 1);
+    public final static int PERSISTENCE_QUEUE_SIZE = Integer.getInteger("planner.persistenceQueueSize", 1000);
+    // the threads racing the searches of the portfolios and planning the days of the multi day requests, the next
+    // searches are rejected (-Dplanner.portfolioThreads)
+    public final static int PORTFOLIO_THREADS = Integer.getInteger("planner.portfolioThreads",
+                                                                   8 * PLANNER_PARALLELISM);
+    // the threads running the admin jobs and the number of jobs waiting for them, the next ones are rejected
+    public final static int ADMIN_THREADS = Integer.getInteger("planner.adminThreads", 1);
+    public final static int ADMIN_QUEUE_SIZE = Integer.getInteger("planner.adminQueueSize", 4);
+    // the number of workers of the pool shared by the searches (-Dplanner.searchParallelism)
+    public final static int SEARCH_PARALLELISM = Integer.getInteger("planner.searchParallelism",
+                                                                    Runtime.getRuntime().availableProcessors());
+    // how long the planner searches for a request (the client can ask for less, maxLatencyMs)
+    public final static long PLANNER_TIME_LIMIT_MS = 5000;
+    // a request not answered this long after its time limit (loading the city, saving the plan) is answered with
+    // 503, like a rejected one (-Dplanner.responseGraceMs)
+    public final static long PLANNER_RESPONSE_GRACE_MS = Long.getLong("planner.responseGraceMs", 5000);
+    // requests having at most this number of places are planned by the exact search (-Dplanner.exactMaxPlaces)
+    public final static int EXACT_SEARCH_MAX_PLACES = Integer.getInteger("planner.exactMaxPlaces", 12);
+    // requests having at least this number of places are planned by the beam search (-Dplanner.beamMinPlaces)
+    public final static int BEAM_SEARCH_MIN_PLACES = Integer.getInteger("planner.beamMinPlaces", 16);
+    // the default beam width (-Dplanner.beamWidth, -Dplanner.beamWidth.<city> for a city or beamWidth in the request)
+    public final static int BEAM_WIDTH = Integer.getInteger("planner.beamWidth", 256);
+    // how long the neighborhood search improves the itineraries of the beam and tree searches (-Dplanner.improvementMs)
+    public final static long IMPROVEMENT_TIME_MS = Long.getLong("planner.improvementMs", 200);
+    // the neighborhood search is random, but with the same seed the same request gets the same itineraries
+    public final static long NEIGHBORHOOD_SEARCH_SEED = 0x5DEECE66DL;
+    // race the searches in a portfolio for every request (-Dplanner.portfolio, portfolio in the request)
+    public final static boolean PORTFOLIO = Boolean.getBoolean("planner.portfolio");
+    // the plans of the last requests are cached (-Dplanner.cacheSize, 0 disables the cache) for a while
+    public final static int PLAN_CACHE_SIZE = Integer.getInteger("planner.cacheSize", 1024);
+    public final static long PLAN_CACHE_TTL_MS = Long.getLong("planner.cacheTtlMs", 10 * 60 * 1000);
+    // a plan is not cached if the deadline of its request (which waited for a thread) cut more than this from the
+    // time its search would have had, the next identical request gets a full search (-Dplanner.cacheMaxShortfallMs)
+    public final static long PLAN_CACHE_MAX_SHORTFALL_MS = Long.getLong("planner.cacheMaxShortfallMs", 100);
+    // the requests starting in the same cell of this size (in degrees, about 100 m) share the cached plans
+    public final static double PLAN_CACHE_START_PRECISION = 0.001;
+    // how long the planner searches when an itinerary is replanned (-Dplanner.replanMs)
+    public final static long REPLAN_TIME_LIMIT_MS = Long.getLong("planner.replanMs", 500);
+    // the number of itineraries of a plan (-Dplanner.alternatives, alternatives in the request up to the maximum)
+    public final static int PLANNER_ALTERNATIVES = Integer.getInteger("planner.alternatives", 5);
+    public final static int PLANNER_MAX_ALTERNATIVES = 10;
+    // the itineraries of a plan differ by at least this Jaccard distance between their places (-Dplanner.minDistance)
+    public final static double PLANNER_MIN_DISTANCE = Double.parseDouble(System.getProperty("planner.minDistance",
+                                                                                            "0.3"));
+    // a multi day request plans all its days with this share of its time limit, the rest moves places between days
+    public final static double MULTI_DAY_FIRST_SHARE = 0.5;
+    // the places of a multi day request are moved between its days at most this number of times (-Dplanner.dayMoves)
+    public final static int MULTI_DAY_MAX_MOVES = Integer.getInteger("planner.dayMoves", 8);
+
+    public final static int SECONDS_PER_DAY = 24 * 60 * 60;
 
     public final static TemporalField US_FIELD_DAY_OF_WEEK = WeekFields.of(Locale.US).dayOfWeek();
 }
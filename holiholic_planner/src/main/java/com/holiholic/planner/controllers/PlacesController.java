@@ -1,11 +1,14 @@
 package com.holiholic.planner.controllers;
 
 import com.holiholic.planner.database.DatabaseManager;
+import com.holiholic.planner.utils.ThreadManager;
 import org.json.JSONObject;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 public class PlacesController {
 
@@ -35,7 +38,11 @@ public class PlacesController {
     @ResponseBody
     public ResponseEntity<Boolean> cacheItineraries(@RequestParam String cityName)  {
         try {
-            return new ResponseEntity<>(DatabaseManager.cacheItineraries(cityName), HttpStatus.OK);
+            // runs on the admin threads, so it can not slow down the plan requests
+            boolean cached = ThreadManager.submitAdmin(() -> DatabaseManager.cacheItineraries(cityName)).get();
+            return new ResponseEntity<>(cached, HttpStatus.OK);
+        } catch (RejectedExecutionException e) {
+            return new ResponseEntity<>(false, HttpStatus.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             e.printStackTrace();
             return new ResponseEntity<>(false, HttpStatus.BAD_REQUEST);
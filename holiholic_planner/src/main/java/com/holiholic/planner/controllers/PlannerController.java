@@ -1,22 +1,157 @@
 package com.holiholic.planner.controllers;
 
+import com.holiholic.planner.constant.Constants;
 import com.holiholic.planner.planner.PlanManager;
+import com.holiholic.planner.utils.ThreadManager;
 import org.json.JSONObject;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 public class PlannerController {
+    // the stream is closed by the server if the plan is not ready in this time
+    private static final long STREAM_TIMEOUT_MS = 30000;
 
     @RequestMapping(value = "/getPlan", headers="Content-Type=application/json", method = RequestMethod.POST)
     @ResponseBody
     public ResponseEntity<String> getPlan(@RequestBody String request)  {
+        long received = System.nanoTime();
+        try {
+            JSONObject body = new JSONObject(request);
+            Future<String> plan = ThreadManager.submitPlan(() -> PlanManager.getPlan(body, null, received));
+            return new ResponseEntity<>(getResult(plan, received, Constants.PLANNER_TIME_LIMIT_MS), HttpStatus.OK);
+        } catch (RejectedExecutionException | TimeoutException e) {
+            return getOverloadedResponse("[]");
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ResponseEntity<>("[]", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /* replan - Plan again the rest of an itinerary which is partially executed, see PlanManager.replan
+     *
+     *  @return             : the plan of the remaining places
+     *  @request            : the body of the request
+     */
+    @RequestMapping(value = "/replan", headers="Content-Type=application/json", method = RequestMethod.POST)
+    @ResponseBody
+    public ResponseEntity<String> replan(@RequestBody String request)  {
+        long received = System.nanoTime();
         try {
-            return new ResponseEntity<>(PlanManager.getPlan(new JSONObject(request)), HttpStatus.OK);
+            JSONObject body = new JSONObject(request);
+            Future<String> plan = ThreadManager.submitPlan(() -> PlanManager.replan(body, received));
+            return new ResponseEntity<>(getResult(plan, received, Constants.REPLAN_TIME_LIMIT_MS), HttpStatus.OK);
+        } catch (RejectedExecutionException | TimeoutException e) {
+            return getOverloadedResponse("[]");
         } catch (Exception e) {
             e.printStackTrace();
             return new ResponseEntity<>("[]", HttpStatus.BAD_REQUEST);
         }
     }
+
+    /* getPlanStream - Same request as getPlan, but the response is a stream of server sent events
+     *                 An "itinerary" event is sent for each itinerary better than the previous ones (as soon as the
+     *                 planner finds it) and the last event is "plan", the ranked list returned by getPlan
+     *
+     *                 If the server is overloaded, the response is an error instead of the stream, if the request
+     *                 fails or is rejected while it is planned, the stream still ends with an empty "plan" event
+     *
+     *  @return             : the emitter of the events
+     *  @request            : the body of the request
+     */
+    @RequestMapping(value = "/getPlan/stream", headers="Content-Type=application/json", method = RequestMethod.POST)
+    public ResponseEntity<SseEmitter> getPlanStream(@RequestBody String request) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        long received = System.nanoTime();
+
+        try {
+            JSONObject body = new JSONObject(request);
+            ThreadManager.submitPlan(() -> {
+                String plan = "[]";
+                try {
+                    plan = PlanManager.getPlan(body, itinerary -> send(emitter, "itinerary", itinerary), received);
+                } catch (RejectedExecutionException e) {
+                    // a pool used by the request rejected it (the searches of a portfolio or the days of a multi
+                    // day request), the client is not left waiting until the stream times out
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    send(emitter, "plan", plan);
+                    emitter.complete();
+                }
+                return plan;
+            });
+        } catch (RejectedExecutionException e) {
+            return getOverloadedResponse(null);
+        } catch (Exception e) {
+            e.printStackTrace();
+            send(emitter, "plan", "[]");
+            emitter.complete();
+        }
+
+        return new ResponseEntity<>(emitter, HttpStatus.OK);
+    }
+
+    /* getResult - Wait for a request planned by the interactive executor until its time limit is over by
+     *             PLANNER_RESPONSE_GRACE_MS, then the request is answered like a rejected one
+     *             A request still waiting for a thread is not planned anymore, a running one stops at its deadline
+     *
+     *  @return             : the result of the request
+     *  @plan               : the request
+     *  @received           : when the request was received (System.nanoTime)
+     *  @timeLimit          : the longest time limit of the request (milliseconds)
+     */
+    private static String getResult(Future<String> plan, long received, long timeLimit) throws Exception {
+        long timeout = received + TimeUnit.MILLISECONDS.toNanos(timeLimit + Constants.PLANNER_RESPONSE_GRACE_MS)
+                       - System.nanoTime();
+        try {
+            return plan.get(timeout, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            plan.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            // a pool used by the request rejected it (the searches of a portfolio or the days of a multi day request)
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw (RejectedExecutionException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /* getOverloadedResponse - Get the response for a request rejected because too many requests are waiting
+     *                         The client is told when to try again (Retry-After header, in seconds)
+     *
+     *  @return             : the response
+     *  @body               : the body of the response
+     */
+    private static <T> ResponseEntity<T> getOverloadedResponse(T body) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, String.valueOf(ThreadManager.getRetryAfter()))
+                             .body(body);
+    }
+
+    /* send - Send an event, if the client is gone the planning goes on (the plan is saved anyway)
+     *
+     *  @return             : void
+     *  @emitter            : the emitter of the events
+     *  @name               : the name of the event
+     *  @data               : the data of the event (json)
+     */
+    private static void send(SseEmitter emitter, String name, String data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // the client closed the connection or the stream timed out
+        }
+    }
 }
@@ -1,11 +1,14 @@
 package com.holiholic.planner.controllers;
 
 import com.holiholic.planner.database.DatabaseManager;
+import com.holiholic.planner.utils.ThreadManager;
 import org.json.JSONObject;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 public class UpdateDatabaseController {
 
@@ -13,7 +16,12 @@ public class UpdateDatabaseController {
     @ResponseBody
     public ResponseEntity<Boolean> updatePlanner(@RequestBody String request)  {
         try {
-            return new ResponseEntity<>(DatabaseManager.updatePlanner(new JSONObject(request)), HttpStatus.OK);
+            JSONObject body = new JSONObject(request);
+            // runs on the admin threads, so it can not slow down the plan requests
+            boolean updated = ThreadManager.submitAdmin(() -> DatabaseManager.updatePlanner(body)).get();
+            return new ResponseEntity<>(updated, HttpStatus.OK);
+        } catch (RejectedExecutionException e) {
+            return new ResponseEntity<>(false, HttpStatus.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             e.printStackTrace();
             return new ResponseEntity<>(false, HttpStatus.BAD_REQUEST);
@@ -14,6 +14,8 @@ import com.holiholic.planner.travel.Itinerary;
 import com.holiholic.planner.travel.ItineraryStats;
 import com.holiholic.planner.utils.*;
 import com.holiholic.planner.utils.Reader;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -22,6 +24,8 @@ import java.io.*;
 import java.sql.ResultSet;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -33,10 +37,12 @@ public class DatabaseManager {
     private static final Logger LOGGER = Logger.getLogger(DatabaseManager.class.getName());
 
     // after the first call of retrieving information from database for a city, the result is cached in this map
-    private final static Map<String, City> cities = new HashMap<>();
+    // (read by the metrics as well, see cacheCity)
+    private final static Map<String, City> cities = new ConcurrentHashMap<>();
 
     // cache itineraries to reduce the number of database queries
-    private final static Map<String, Itinerary> itineraries = new HashMap<>();
+    // saved by the persistence threads and by the admin jobs
+    private final static Map<String, Itinerary> itineraries = new ConcurrentHashMap<>();
 
     // cache PlaceCategory to reduce redundant calls to database used in their deserialization / construction
     private final static Map<String, PlaceCategory> placeCategories = new HashMap<>();
@@ -195,7 +201,7 @@ public class DatabaseManager {
 
             City city = new City(cityName);
             city.setPlaces(places);
-            cities.put(cityName, city);
+            cacheCity(city);
 
             if (openOnly) {
                 return filterPlaces(city, placeCategories, timeFrame).toString(2);
@@ -276,12 +282,17 @@ public class DatabaseManager {
     }
 
     /* cacheCity - Stores in cache a new or updated city
+     *             The memory used by the matrices of the cached city is published as the planner.city.matrix.bytes
+     *             gauge (registered once per city, it reads the city from the cache)
      *
      *  @return         : void
      *  @city           : the city instance
      */
     static void cacheCity(City city) {
-        cities.put(city.getName(), city);
+        String cityName = city.getName();
+        cities.put(cityName, city);
+        Metrics.gauge("planner.city.matrix.bytes", Tags.of("city", cityName), cities,
+                      cached -> cached.containsKey(cityName) ? cached.get(cityName).getMatrixBytes() : 0);
     }
 
     /* isCityCached - Checks if the city instance is cached
@@ -355,6 +366,7 @@ public class DatabaseManager {
     }
 
     /* getMatrix - Get and deserialize matrix from the database
+     *             The load time is published as the planner.matrix.load timer
      *
      *  @return             : matrix
      *  @cityName           : city instance
@@ -364,6 +376,7 @@ public class DatabaseManager {
      */
     public static double[][] getMatrix(String cityName, Enums.TravelMode travelMode, Enums.TravelInfo travelInfo,
                                        int dimention) {
+        long start = System.nanoTime();
         double[][] matrix = new double[dimention][dimention];
         List<DatabasePredicate> predicates = new ArrayList<>();
         predicates.add(new DatabasePredicate("city", "=", "\'" + cityName + "\'"));
@@ -385,6 +398,9 @@ public class DatabaseManager {
             matrix = null;
         } finally {
             result.close();
+            Metrics.timer("planner.matrix.load", "city", cityName, "travelMode", travelMode.name(),
+                          "travelInfo", travelInfo.name())
+                   .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
         return matrix;
     }
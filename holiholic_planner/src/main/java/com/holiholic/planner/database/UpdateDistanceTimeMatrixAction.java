@@ -3,8 +3,10 @@ package com.holiholic.planner.database;
 import com.holiholic.database.api.DatabasePredicate;
 import com.holiholic.database.api.Query;
 import com.holiholic.database.api.SelectResult;
+import com.holiholic.database.api.Workload;
 import com.holiholic.places.api.Places;
 import com.holiholic.planner.constant.Constants;
+import com.holiholic.planner.planner.PlanManager;
 import com.holiholic.planner.travel.City;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -47,11 +49,13 @@ class UpdateDistanceTimeMatrixAction extends UpdateAction {
                 List<String> valuesWalking = getValuesList(cityName, "walking",
                         durationWalking[i][j], distanceWalking[i][j], i, j);
 
-                Query.insert(Constants.PLACES_DISTANCES_TABLE_NAME, valuesDriving);
-                Query.insert(Constants.PLACES_DISTANCES_TABLE_NAME, valuesWalking);
+                Query.insert(Constants.PLACES_DISTANCES_TABLE_NAME, valuesDriving, Workload.BATCH);
+                Query.insert(Constants.PLACES_DISTANCES_TABLE_NAME, valuesWalking, Workload.BATCH);
             }
         }
 
+        // the cached plans were computed with the old values (and again below, once the city is refreshed)
+        PlanManager.invalidatePlans(cityName);
         if (!DatabaseManager.isCityCached(cityName)) {
             return true;
         }
@@ -64,6 +68,7 @@ class UpdateDistanceTimeMatrixAction extends UpdateAction {
         city.setDurations();
         city.setDistances();
         DatabaseManager.cacheCity(city);
+        PlanManager.invalidatePlans(cityName);
         return true;
     }
 
@@ -106,7 +111,7 @@ class UpdateDistanceTimeMatrixAction extends UpdateAction {
     private void deleteOldDistances(String cityName) {
         List<DatabasePredicate> predicates = new ArrayList<>();
         predicates.add(new DatabasePredicate("city", "=", "\'" + cityName + "\'"));
-        Query.delete(Constants.PLACES_DISTANCES_TABLE_NAME, predicates);
+        Query.delete(Constants.PLACES_DISTANCES_TABLE_NAME, predicates, Workload.BATCH);
     }
 
     /* getPlaces - Get a list of places only with latitude and longitude fields used to make requests
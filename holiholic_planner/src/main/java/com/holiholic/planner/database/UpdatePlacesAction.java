@@ -3,9 +3,11 @@ package com.holiholic.planner.database;
 import com.holiholic.database.api.DatabasePredicate;
 import com.holiholic.database.api.Query;
 import com.holiholic.database.api.SelectResult;
+import com.holiholic.database.api.Workload;
 import com.holiholic.places.api.PlaceCategory;
 import com.holiholic.places.api.Places;
 import com.holiholic.planner.constant.Constants;
+import com.holiholic.planner.planner.PlanManager;
 import com.holiholic.planner.travel.City;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -45,10 +47,12 @@ class UpdatePlacesAction extends UpdateAction {
                 if (values == null) {
                     continue;
                 }
-                Query.insert(Constants.PLACES_TABLE_NAME, values);
+                Query.insert(Constants.PLACES_TABLE_NAME, values, Workload.BATCH);
             }
         }
 
+        // the cached plans were computed with the old values (and again below, once the city is refreshed)
+        PlanManager.invalidatePlans(cityName);
         if (!DatabaseManager.isCityCached(cityName)) {
             return true;
         }
@@ -61,6 +65,7 @@ class UpdatePlacesAction extends UpdateAction {
 
         city.setPlaces(DatabaseManager.getPlaces(cityName));
         DatabaseManager.cacheCity(city);
+        PlanManager.invalidatePlans(cityName);
         return true;
     }
 
@@ -72,7 +77,7 @@ class UpdatePlacesAction extends UpdateAction {
     private void deleteOldPlaces(String cityName) {
         List<DatabasePredicate> predicates = new ArrayList<>();
         predicates.add(new DatabasePredicate("city", "=", "\'" + cityName + "\'"));
-        Query.delete(Constants.PLACES_TABLE_NAME, predicates);
+        Query.delete(Constants.PLACES_TABLE_NAME, predicates, Workload.BATCH);
     }
 
     /* getPlacesCategories - Return a list of place categories
@@ -82,6 +82,16 @@ public class Place implements Comparable<Place> {
         return !visitInside || timeFrame.canVisit(time);
     }
 
+    /* canVisit - Checks if the place can be visited at the given second of the given day of the week
+     *
+     *  @return       : true/false
+     *  @dayOfWeek    : day of week in US convention (SUN = 1 ... SAT = 7)
+     *  @second       : seconds from the midnight of that day
+     */
+    public boolean canVisit(int dayOfWeek, int second) {
+        return !visitInside || timeFrame.isNonStop() || timeFrame.canVisit(dayOfWeek, second);
+    }
+
     /* canVisit - Checks if the place can be visited given multiple days interval with each day other constraints
      *
      *  @return       : true/false
@@ -217,6 +227,8 @@ public class Place implements Comparable<Place> {
             place.mealType = Enums.MealType.deserialize(serializedPlace.getString("mealType"));
             place.durationToNext = serializedPlace.getInt("durationToNext");
             place.plannedHour = Interval.getDateTimeFromHour(serializedPlace.getString("plannedHour"));
+            // the itineraries planned before the fixed times were serialized do not have them
+            place.fixedAt = serializedPlace.optString("fixedAt", "anytime");
             place.visitInside = serializedPlace.getBoolean("visitInside");
             place.distanceToNext = serializedPlace.getInt("distanceToNext");
             place.carPlaceName = serializedPlace.getString("carPlaceName");
@@ -0,0 +1,301 @@
+package com.holiholic.planner.planner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/* DominanceTable - The labels of the exact and beam searches (dynamic programming over the visited places)
+ *                  A label is a partial itinerary ending at its last place and it is identified by its state:
+ *                  the visited places (bitmask), the last place and the place where the car is parked
+ *                  For each state only the labels which are not dominated are kept, a label dominates another one
+ *                  if it starts visiting the last place earlier (or at the same time) with a better score
+ *                  The beam search keeps only the best labels of each layer (the labels having the same number of
+ *                  places), so the number of labels is bounded for any number of places
+ *                  The labels are kept in parallel arrays and never removed, so an itinerary can be rebuilt
+ *                  from the last label by following the parents
+ *
+ */
+final class DominanceTable {
+    // the visited places are a long bitmask
+    static final int MAX_PLACES = Long.SIZE;
+    private static final int NO_LABEL = -1;
+
+    // visited places, local index of the last place and local index of the place where the car is parked
+    private long[] masks;
+    private int[] lasts;
+    private int[] cars;
+    // start of the visit of the last place (seconds from the start of the planning day)
+    private int[] times;
+    // time waited before the visit of the last place (the place was not open yet or it is fixed later)
+    private int[] waits;
+    // duration to walk back after the car (see Planner.getDuration)
+    private int[] returns;
+    private double[] scores;
+    // the order of the labels in the beam search (the score plus the estimate of the score to come)
+    private double[] priorities;
+    private int[] parents;
+    // local index of the first place of the itinerary
+    private int[] firsts;
+    // the next label having the same state (a linked list for each state) and if the label is dominated
+    private int[] nexts;
+    private boolean[] dominated;
+    private int size = 0;
+    // the labels dominated by another one and the ones left out of a layer by the beam
+    private long dominatedCount = 0;
+    private long cutCount = 0;
+
+    // the first label of each state of the layer being filled (all its labels have the same number of places)
+    // the states are hashed in a long, so the labels with the same hash are checked to have the same state
+    private Map<Long, Integer> heads = new HashMap<>();
+    // the labels of the layer being filled
+    private int[] layer = new int[64];
+    private int layerSize = 0;
+
+    DominanceTable() {
+        allocate(1024);
+    }
+
+    /* allocate - Resize the label arrays to the given capacity keeping the current labels
+     *
+     *  @return             : void
+     *  @capacity           : the new capacity
+     */
+    private void allocate(int capacity) {
+        masks = masks == null ? new long[capacity] : Arrays.copyOf(masks, capacity);
+        lasts = lasts == null ? new int[capacity] : Arrays.copyOf(lasts, capacity);
+        cars = cars == null ? new int[capacity] : Arrays.copyOf(cars, capacity);
+        times = times == null ? new int[capacity] : Arrays.copyOf(times, capacity);
+        waits = waits == null ? new int[capacity] : Arrays.copyOf(waits, capacity);
+        returns = returns == null ? new int[capacity] : Arrays.copyOf(returns, capacity);
+        scores = scores == null ? new double[capacity] : Arrays.copyOf(scores, capacity);
+        priorities = priorities == null ? new double[capacity] : Arrays.copyOf(priorities, capacity);
+        parents = parents == null ? new int[capacity] : Arrays.copyOf(parents, capacity);
+        firsts = firsts == null ? new int[capacity] : Arrays.copyOf(firsts, capacity);
+        nexts = nexts == null ? new int[capacity] : Arrays.copyOf(nexts, capacity);
+        dominated = dominated == null ? new boolean[capacity] : Arrays.copyOf(dominated, capacity);
+    }
+
+    /* add - Add a label to the layer being filled, unless another label of the same state dominates it
+     *       The labels of the same state dominated by the new one are marked as dominated
+     *
+     *  @return             : the new label or -1 if it is dominated
+     *  @mask               : the visited places
+     *  @last               : local index of the last place
+     *  @car                : local index of the place where the car is parked
+     *  @time               : start of the visit of the last place
+     *  @wait               : time waited before the visit
+     *  @returnDuration     : duration to walk back after the car
+     *  @score              : the score of the itinerary
+     *  @priority           : the order of the label in the beam search (higher first)
+     *  @parent             : the previous label (-1 for the first place)
+     *  @slack              : the score that an earlier label may lose later (the fixed time bonus of the last place)
+     */
+    int add(long mask, int last, int car, int time, int wait, int returnDuration, double score, double priority,
+            int parent, double slack) {
+        long key = mask ^ last * 0x9E3779B97F4A7C15L ^ car * 0xC2B2AE3D27D4EB4FL;
+        Integer head = heads.get(key);
+
+        for (int label = head == null ? NO_LABEL : head; label != NO_LABEL; label = nexts[label]) {
+            if (isSameState(label, mask, last, car) && dominates(times[label], scores[label], time, score, slack)) {
+                dominatedCount++;
+                return NO_LABEL;
+            }
+        }
+
+        if (size == masks.length) {
+            allocate(size * 2);
+        }
+
+        int id = size++;
+        masks[id] = mask;
+        lasts[id] = last;
+        cars[id] = car;
+        times[id] = time;
+        waits[id] = wait;
+        returns[id] = returnDuration;
+        scores[id] = score;
+        priorities[id] = priority;
+        parents[id] = parent;
+        firsts[id] = parent == NO_LABEL ? last : firsts[parent];
+        dominated[id] = false;
+        nexts[id] = NO_LABEL;
+
+        // the new label becomes the head, followed by the labels of the state which it does not dominate
+        int tail = id;
+        for (int label = head == null ? NO_LABEL : head; label != NO_LABEL; ) {
+            int following = nexts[label];
+            if (isSameState(label, mask, last, car) && dominates(time, score, times[label], scores[label], slack)) {
+                dominated[label] = true;
+                dominatedCount++;
+            } else {
+                nexts[tail] = label;
+                tail = label;
+            }
+            label = following;
+        }
+        nexts[tail] = NO_LABEL;
+        heads.put(key, id);
+
+        if (layerSize == layer.length) {
+            layer = Arrays.copyOf(layer, layerSize * 2);
+        }
+        layer[layerSize++] = id;
+        return id;
+    }
+
+    /* isSameState - Checks if the label has the given state
+     *
+     *  @return             : true/false
+     */
+    private boolean isSameState(int label, long mask, int last, int car) {
+        return masks[label] == mask && lasts[label] == last && cars[label] == car;
+    }
+
+    /* dominates - Checks if the first label dominates the second one (both have the same state)
+     *             An earlier label must be better by the slack, because it may lose the fixed time bonus
+     *
+     *  @return             : true/false
+     */
+    private static boolean dominates(int time, double score, int otherTime, double otherScore, double slack) {
+        if (time == otherTime) {
+            return score >= otherScore;
+        }
+        return time < otherTime && score >= otherScore + slack;
+    }
+
+    /* nextLayer - Get the labels of the layer filled so far (skipping the dominated ones) and start a new layer
+     *             If there are more labels than the given width, only the ones with the highest priority are kept
+     *
+     *  @return             : the labels
+     *  @width              : the maximum number of labels
+     */
+    int[] nextLayer(int width) {
+        int count = 0;
+        int[] labels = new int[layerSize];
+
+        for (int i = 0; i < layerSize; i++) {
+            if (!dominated[layer[i]]) {
+                labels[count++] = layer[i];
+            }
+        }
+
+        heads = new HashMap<>();
+        layerSize = 0;
+
+        if (count <= width) {
+            return Arrays.copyOf(labels, count);
+        }
+        cutCount += count - width;
+        return Arrays.stream(labels, 0, count)
+                     .boxed()
+                     .sorted((l1, l2) -> Double.compare(priorities[l2], priorities[l1]))
+                     .limit(width)
+                     .mapToInt(Integer::intValue)
+                     .toArray();
+    }
+
+    /* getDominatedCount - Get the number of labels dominated by another label of the same state
+     *
+     *  @return             : the number of labels
+     */
+    long getDominatedCount() {
+        return dominatedCount;
+    }
+
+    /* getCutCount - Get the number of labels left out of the layers by the beam width
+     *
+     *  @return             : the number of labels
+     */
+    long getCutCount() {
+        return cutCount;
+    }
+
+    /* size - Get the number of labels created so far
+     *
+     *  @return             : the number of labels
+     */
+    int size() {
+        return size;
+    }
+
+    /* getMask - Get the visited places (bitmask of local indexes) of a label
+     *
+     *  @return             : the visited places (bitmask of local indexes)
+     *  @label              : the label
+     */
+    long getMask(int label) {
+        return masks[label];
+    }
+
+    /* getLast - Get the local index of the last place of a label
+     *
+     *  @return             : local index of the last place
+     *  @label              : the label
+     */
+    int getLast(int label) {
+        return lasts[label];
+    }
+
+    /* getCar - Get the local index of the place where the car is parked of a label
+     *
+     *  @return             : local index of the place where the car is parked
+     *  @label              : the label
+     */
+    int getCar(int label) {
+        return cars[label];
+    }
+
+    /* getTime - Get the start of the visit of the last place of a label
+     *
+     *  @return             : the start of the visit of the last place
+     *  @label              : the label
+     */
+    int getTime(int label) {
+        return times[label];
+    }
+
+    /* getWait - Get the time waited before the visit of the last place of a label
+     *
+     *  @return             : the time waited before the visit of the last place
+     *  @label              : the label
+     */
+    int getWait(int label) {
+        return waits[label];
+    }
+
+    /* getReturn - Get the duration to walk back after the car of a label
+     *
+     *  @return             : the duration to walk back after the car
+     *  @label              : the label
+     */
+    int getReturn(int label) {
+        return returns[label];
+    }
+
+    /* getScore - Get the score of the itinerary of a label
+     *
+     *  @return             : the score of the itinerary
+     *  @label              : the label
+     */
+    double getScore(int label) {
+        return scores[label];
+    }
+
+    /* getParent - Get the previous label or -1 for the first place of a label
+     *
+     *  @return             : the previous label or -1 for the first place
+     *  @label              : the label
+     */
+    int getParent(int label) {
+        return parents[label];
+    }
+
+    /* getFirst - Get the local index of the first place of the itinerary of a label
+     *
+     *  @return             : local index of the first place of the itinerary
+     *  @label              : the label
+     */
+    int getFirst(int label) {
+        return firsts[label];
+    }
+}
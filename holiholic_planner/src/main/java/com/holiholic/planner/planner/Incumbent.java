@@ -0,0 +1,33 @@
+package com.holiholic.planner.planner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Incumbent - The score an itinerary must beat to be kept by the tasks of one planner: the score of the worst of
+ *             the top itineraries once there are enough of them (the best score for a single itinerary)
+ *             The score is kept as the bits of a double in an AtomicLong, so the tasks read it for pruning without
+ *             locking and see the improvements of the other tasks as soon as they are published
+ *             It usually rises, but it drops when a better itinerary replaces several similar ones and the top
+ *             itineraries are not full anymore, otherwise the tasks would prune against a score no longer kept
+ *
+ */
+final class Incumbent {
+    private final AtomicLong bits = new AtomicLong(Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY));
+
+    /* get - Get the score to beat
+     *
+     *  @return             : the score
+     */
+    double get() {
+        return Double.longBitsToDouble(bits.get());
+    }
+
+    /* set - Publish the score to beat, lower or higher than the previous one
+     *       The callers publish under the lock of the top itineraries, so the last published score is the current one
+     *
+     *  @return             : void
+     *  @score              : the new score
+     */
+    void set(double score) {
+        bits.set(Double.doubleToRawLongBits(score));
+    }
+}
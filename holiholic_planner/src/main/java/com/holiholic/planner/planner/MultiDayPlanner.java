@@ -0,0 +1,435 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.constant.Constants;
+import com.holiholic.planner.models.Place;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.travel.TravelMatrix;
+import com.holiholic.planner.utils.TimeFrame;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/* MultiDayPlanner - Plans the places of a request over all the open days of the user time frame
+ *                   Each place is assigned to a day when it is open (the most constrained places first), to the day
+ *                   which is the least busy after adding its visit and the travel from the closest place of that day
+ *                   Then each day is planned by its own planner, all the days at the same time, sharing the matrices
+ *                   of the city (the rewards depend on the opening hours of the day, so each day generates them for
+ *                   its own places)
+ *                   A place left out of the best itinerary of its day is moved to the open day with the most free
+ *                   time and the two days are planned again, the move is kept only if it raises the total score
+ *                   (the other day may drop a worse place for it, which can be moved by the next moves)
+ *
+ */
+final class MultiDayPlanner {
+    private final City city;
+    private final TimeFrame timeFrame;
+    private final PlannerFactory factory;
+    private final ExecutorService executor;
+    // how long all the days are planned and moved (milliseconds)
+    private long timeLimit = Constants.PLANNER_TIME_LIMIT_MS;
+    // when the response of the request is due (System.nanoTime), no day is planned after it
+    private long requestDeadline = Long.MAX_VALUE;
+    // how much the deadline of the request cut from the time limit (milliseconds)
+    private long searchShortfall = 0;
+    // the days in order, each one with the places assigned to it and its plan
+    private List<Day> days;
+    // the number of places moved between the days, which raised the total score
+    private int movesCount = 0;
+
+    /* PlannerFactory - Creates a planner configured for the request and the time limit (the same for all the days)
+     *
+     */
+    interface PlannerFactory {
+        /* create - Create the planner of a day
+         *
+         *  @return             : the planner
+         *  @places             : the number of places of the day
+         *  @timeLimit          : how long the day is planned (milliseconds)
+         */
+        Planner create(int places, long timeLimit);
+    }
+
+    /* Day - A day of the request, the places assigned to it and the planner of its plan
+     *
+     */
+    private static class Day {
+        private final int dayOfWeek;
+        private final List<Place> places = new ArrayList<>();
+        // the user time frame in the day (seconds from midnight)
+        private final int start;
+        private final int end;
+        // the visits and the travels planned when the places were assigned (seconds)
+        private int load = 0;
+        private Planner planner;
+        private List<List<Place>> plan = new ArrayList<>();
+
+        private Day(int dayOfWeek, int[] seconds) {
+            this.dayOfWeek = dayOfWeek;
+            this.start = seconds[0];
+            this.end = seconds[1];
+        }
+    }
+
+    /* Move - A place moved from a day to another one
+     *
+     */
+    private static class Move {
+        private final Place place;
+        private final Day from;
+        private final Day to;
+
+        private Move(Place place, Day from, Day to) {
+            this.place = place;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    MultiDayPlanner(City city, TimeFrame timeFrame, PlannerFactory factory, ExecutorService executor) {
+        this.city = city;
+        this.timeFrame = timeFrame;
+        this.factory = factory;
+        this.executor = executor;
+    }
+
+    /* getPlan - Plan the places over the days, see the description of the class
+     *
+     *  @return             : the plan of each open day by its day of the week, in the order of the days
+     *  @places             : the places the user wants to visit (not changed, each day plans copies)
+     */
+    Map<Integer, List<List<Place>>> getPlan(List<Place> places) {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimit);
+        if (requestDeadline != Long.MAX_VALUE) {
+            end = Math.min(end, requestDeadline);
+        }
+        searchShortfall = timeLimit - TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime());
+
+        assign(places);
+        plan(days, (long) (timeLimit * Constants.MULTI_DAY_FIRST_SHARE));
+        rebalance(end);
+
+        Map<Integer, List<List<Place>>> plan = new LinkedHashMap<>();
+        for (Day day : days) {
+            plan.put(day.dayOfWeek, day.plan);
+        }
+        return plan;
+    }
+
+    /* assign - Assign each place to a day, see the description of the class
+     *
+     *  @return             : void
+     *  @places             : the places the user wants to visit
+     */
+    private void assign(List<Place> places) {
+        days = new ArrayList<>();
+        for (int dayOfWeek : timeFrame.getOpenDays()) {
+            days.add(new Day(dayOfWeek, timeFrame.getOpeningSeconds(dayOfWeek)));
+        }
+
+        List<Place> sorted = new ArrayList<>(places);
+        sorted.sort(Comparator.comparingInt((Place place) -> getOpenDays(place).size())
+                              .thenComparing(Comparator.comparingInt((Place place) -> place.durationVisit).reversed()));
+
+        for (Place place : sorted) {
+            List<Day> candidates = getOpenDays(place);
+            if (candidates.isEmpty()) {
+                // the planner of the day will not visit it, but it is still part of the request
+                candidates = days;
+            }
+            // two places fixed at the same time are put on different days while possible
+            List<Day> notFixed = new ArrayList<>();
+            for (Day day : candidates) {
+                if (!hasFixedAt(day, place.fixedAt)) {
+                    notFixed.add(day);
+                }
+            }
+            if (!notFixed.isEmpty()) {
+                candidates = notFixed;
+            }
+
+            Day best = null;
+            double bestUsage = Double.POSITIVE_INFINITY;
+            int bestTravel = 0;
+            for (Day day : candidates) {
+                int travel = getClosestTravel(day, place);
+                double usage = (double) (day.load + place.durationVisit + travel) / Math.max(1, day.end - day.start);
+                if (usage < bestUsage) {
+                    best = day;
+                    bestUsage = usage;
+                    bestTravel = travel;
+                }
+            }
+
+            best.places.add(place);
+            best.load += place.durationVisit + bestTravel;
+        }
+    }
+
+    /* rebalance - Move the places left out of the best itinerary of their day to the open day with the most free
+     *             time, one at a time, until the time is up or no place is left to move
+     *
+     *  @return             : void
+     *  @end                : when the moves must end (System.nanoTime)
+     */
+    private void rebalance(long end) {
+        Set<Integer> tried = new HashSet<>();
+
+        for (int moves = 0; moves < Constants.MULTI_DAY_MAX_MOVES; moves++) {
+            long timeLeft = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime());
+            if (timeLeft <= 0) {
+                return;
+            }
+
+            Move move = getMove(tried);
+            if (move == null) {
+                return;
+            }
+            tried.add(move.place.id);
+
+            double before = getScore(move.from) + getScore(move.to);
+            Day from = copy(move.from);
+            Day to = copy(move.to);
+            from.places.remove(move.place);
+            to.places.add(move.place);
+            plan(Arrays.asList(from, to), Math.max(1, timeLeft / (Constants.MULTI_DAY_MAX_MOVES - moves)));
+
+            if (getScore(from) + getScore(to) > before) {
+                days.set(days.indexOf(move.from), from);
+                days.set(days.indexOf(move.to), to);
+                movesCount++;
+            }
+        }
+    }
+
+    /* getMove - Get the next place to move: the best rated place left out of the best itinerary of its day,
+     *           to the open day having the most free time after its best itinerary
+     *
+     *  @return             : the move or null if no place can be moved
+     *  @tried              : the places already moved (or tried)
+     */
+    private Move getMove(Set<Integer> tried) {
+        Move best = null;
+
+        for (Day from : days) {
+            Set<Integer> visited = getVisited(from);
+            for (Place place : from.places) {
+                if (visited.contains(place.id) || tried.contains(place.id)
+                    || (best != null && place.rating <= best.place.rating)) {
+                    continue;
+                }
+
+                Day to = null;
+                for (Day day : getOpenDays(place)) {
+                    if (day != from && (to == null || getFreeTime(day) > getFreeTime(to))) {
+                        to = day;
+                    }
+                }
+                // even a day without room can drop a worse place for it
+                if (to != null) {
+                    best = new Move(place, from, to);
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /* plan - Plan the days at the same time, each one by a new planner, the calling thread waits for all of them
+     *        If the executor rejects a day or a search of a day (all its threads are busy), the request is rejected
+     *
+     *  @return             : void
+     *  @toPlan             : the days
+     *  @limit              : how long each day is planned (milliseconds)
+     */
+    private void plan(List<Day> toPlan, long limit) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Day day : toPlan) {
+            futures.add(executor.submit(() -> planDay(day, limit)));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    throw (RejectedExecutionException) e.getCause();
+                }
+                e.printStackTrace();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /* planDay - Plan a day, the planner gets copies of the places (it changes them)
+     *
+     *  @return             : void
+     *  @day                : the day
+     *  @limit              : how long the day is planned (milliseconds)
+     */
+    private void planDay(Day day, long limit) {
+        List<Place> places = new ArrayList<>();
+        for (Place place : day.places) {
+            places.add(place.copy());
+        }
+
+        Planner planner = factory.create(places.size(), limit);
+        planner.setPlanningDay(day.dayOfWeek);
+        planner.setRequestDeadline(requestDeadline);
+        day.plan = planner.getPlan(places);
+        day.planner = planner;
+    }
+
+    /* copy - Copy a day with its places, but without its plan
+     *
+     *  @return             : the copy
+     *  @day                : the day
+     */
+    private static Day copy(Day day) {
+        Day other = new Day(day.dayOfWeek, new int[]{day.start, day.end});
+        other.places.addAll(day.places);
+        other.load = day.load;
+        return other;
+    }
+
+    /* getOpenDays - Get the days when a place can be visited
+     *
+     *  @return             : the days
+     *  @place              : the place
+     */
+    private List<Day> getOpenDays(Place place) {
+        List<Day> openDays = new ArrayList<>();
+        for (Day day : days) {
+            if (place.isNonStop() || !place.visitInside || !place.timeFrame.isClosed(day.dayOfWeek)) {
+                openDays.add(day);
+            }
+        }
+        return openDays;
+    }
+
+    /* hasFixedAt - Checks if a day has a place fixed at the given time
+     *
+     *  @return             : true/false
+     *  @day                : the day
+     *  @fixedAt            : the fixed time ("anytime" is never taken)
+     */
+    private static boolean hasFixedAt(Day day, String fixedAt) {
+        if (fixedAt.equals("anytime")) {
+            return false;
+        }
+
+        for (Place place : day.places) {
+            if (place.fixedAt.equals(fixedAt)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* getClosestTravel - Get the travel duration from a place to the closest place of a day (like the rewards,
+     *                    the shortest of driving and walking)
+     *
+     *  @return             : the duration in seconds (0 if the day has no places yet)
+     *  @day                : the day
+     *  @place              : the place
+     */
+    private int getClosestTravel(Day day, Place place) {
+        TravelMatrix matrix = city.getMatrix();
+        int closest = 0;
+
+        for (int i = 0; i < day.places.size(); i++) {
+            int duration = matrix.getShortestDuration(day.places.get(i).id, place.id);
+            closest = i == 0 ? duration : Math.min(closest, duration);
+        }
+        return closest;
+    }
+
+    /* getVisited - Get the places of the best itinerary of a day
+     *
+     *  @return             : the ids of the places
+     *  @day                : the day
+     */
+    private static Set<Integer> getVisited(Day day) {
+        Set<Integer> visited = new HashSet<>();
+        if (!day.plan.isEmpty()) {
+            for (Place place : day.plan.get(0)) {
+                visited.add(place.id);
+            }
+        }
+        return visited;
+    }
+
+    /* getFreeTime - Get the time of a day left after its best itinerary
+     *
+     *  @return             : the time in seconds
+     *  @day                : the day
+     */
+    private static int getFreeTime(Day day) {
+        if (day.plan.isEmpty()) {
+            return day.end - day.start;
+        }
+
+        List<Place> itinerary = day.plan.get(0);
+        Place last = itinerary.get(itinerary.size() - 1);
+        return day.end - (last.plannedHour.toLocalTime().toSecondOfDay() + last.durationVisit);
+    }
+
+    /* getScore - Get the score of the best itinerary of a day
+     *
+     *  @return             : the score (0 if the day has no itinerary)
+     *  @day                : the day
+     */
+    private static double getScore(Day day) {
+        return day.planner == null ? 0 : Math.max(0, day.planner.getBestScore());
+    }
+
+    /* getTotalScore - Get the sum of the scores of the best itineraries of the days
+     *
+     *  @return             : the score
+     */
+    double getTotalScore() {
+        double score = 0;
+        for (Day day : days) {
+            score += getScore(day);
+        }
+        return score;
+    }
+
+    /* getSearchShortfall - Get how much time the deadline of the request took from the time limit of the days
+     *
+     *  @return             : the time (milliseconds)
+     */
+    long getSearchShortfall() {
+        return searchShortfall;
+    }
+
+    /* getMovesCount - Get the number of places moved between the days, which raised the total score
+     *
+     *  @return             : the number of moves
+     */
+    int getMovesCount() {
+        return movesCount;
+    }
+
+    /* setTimeLimit - Set how long the days are planned and the places are moved
+     *
+     *  @return             : void
+     *  @timeLimit          : the limit in milliseconds
+     */
+    void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /* setRequestDeadline - Set when the response of the request is due, no day is planned after it
+     *
+     *  @return             : void
+     *  @requestDeadline    : the deadline (System.nanoTime)
+     */
+    void setRequestDeadline(long requestDeadline) {
+        this.requestDeadline = requestDeadline;
+    }
+}
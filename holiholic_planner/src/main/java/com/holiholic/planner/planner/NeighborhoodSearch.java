@@ -0,0 +1,278 @@
+package com.holiholic.planner.planner;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+/* NeighborhoodSearch - Large neighborhood search improving an itinerary of the planner until a deadline
+ *                      Each iteration changes the current route with one of the moves: reversing a segment (2-opt),
+ *                      moving a segment of up to 3 places to another position (or-opt), replacing a place with one
+ *                      which is not in the route (swap) or removing a few places and inserting greedily the ones
+ *                      bringing the best score (destroy and repair)
+ *                      The routes are scheduled by Planner.evaluateRoute like the exact search extends its labels, so
+ *                      the opening hours, the fixed times and the meals are respected by any route
+ *                      A changed route is accepted if it is not much worse than the best one (record to record
+ *                      travel), so the search can leave a local optimum
+ *
+ */
+final class NeighborhoodSearch {
+    // the longest segment moved by or-opt
+    private static final int MAX_SEGMENT = 3;
+    // the accepted routes are at most this much worse than the best one (relative to its score)
+    private static final double DEVIATION = 0.02;
+
+    private final Planner planner;
+    // number of places of the request (local indexes 0 .. n - 1)
+    private final int n;
+    private final Random random;
+    private final Route current;
+    private final Route candidate;
+    private final Route best;
+    private final Route trial;
+    private final Route insertion;
+    private long evaluations = 0;
+    // called with each route improving the best one (can be null)
+    private Consumer<Route> listener;
+
+    NeighborhoodSearch(Planner planner, int n, long seed) {
+        this.planner = planner;
+        this.n = n;
+        this.random = new Random(seed);
+        this.current = new Route(n);
+        this.candidate = new Route(n);
+        this.best = new Route(n);
+        this.trial = new Route(n);
+        this.insertion = new Route(n);
+    }
+
+    /* setListener - Set the listener called with each route improving the best one
+     *
+     *  @return             : void
+     *  @listener           : the listener
+     */
+    void setListener(Consumer<Route> listener) {
+        this.listener = listener;
+    }
+
+    /* construct - Build a route starting with the given place, going each time to the place which can be visited
+     *             next with the best reward (like NeighborRewardComparator orders the neighbors)
+     *
+     *  @return             : the route (a new route, empty if the first place can not be visited)
+     *  @first              : local index of the first place
+     */
+    Route construct(int first) {
+        Route route = new Route(n);
+        route.places[route.size++] = first;
+        evaluate(route);
+
+        while (route.size > 0 && route.size < n) {
+            insertion.size = 0;
+            insertion.score = Double.NEGATIVE_INFINITY;
+
+            for (int index = 0; index < n; index++) {
+                if (route.contains(index)) {
+                    continue;
+                }
+                trial.copyFrom(route);
+                trial.places[trial.size++] = index;
+                evaluate(trial);
+                // the reward of the last edge is the difference of the scores, unless the place was dropped
+                if (trial.size > route.size && trial.score > insertion.score) {
+                    insertion.copyFrom(trial);
+                }
+            }
+
+            if (insertion.size == 0) {
+                break;
+            }
+            route.copyFrom(insertion);
+        }
+
+        return route;
+    }
+
+    /* improve - Improve the route until the deadline or until the planner is stopped
+     *
+     *  @return             : the best route found (a new route, the given one is not changed)
+     *  @route              : the route to start from
+     *  @deadline           : when to stop (System.nanoTime)
+     */
+    Route improve(Route route, long deadline) {
+        current.copyFrom(route);
+        evaluate(current);
+        repair(current);
+        best.copyFrom(current);
+        if (listener != null) {
+            listener.accept(best);
+        }
+
+        while (current.size > 0 && System.nanoTime() < deadline && !planner.isStopped()) {
+            candidate.copyFrom(current);
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    twoOpt(candidate);
+                    break;
+                case 1:
+                    orOpt(candidate);
+                    break;
+                case 2:
+                    swap(candidate);
+                    break;
+                default:
+                    destroy(candidate);
+                    repair(candidate);
+                    break;
+            }
+            evaluate(candidate);
+
+            if (candidate.score >= current.score || candidate.score >= best.score - DEVIATION * Math.abs(best.score)) {
+                current.copyFrom(candidate);
+                if (current.score > best.score) {
+                    best.copyFrom(current);
+                    if (listener != null) {
+                        listener.accept(best);
+                    }
+                }
+            }
+        }
+
+        Route result = new Route(n);
+        result.copyFrom(best);
+        return result;
+    }
+
+    /* getEvaluations - Get the number of routes evaluated so far
+     *
+     *  @return             : the number of evaluations
+     */
+    long getEvaluations() {
+        return evaluations;
+    }
+
+    /* evaluate - Schedule the route and compute its score
+     *
+     *  @return             : void
+     *  @route              : the route
+     */
+    private void evaluate(Route route) {
+        planner.evaluateRoute(route);
+        evaluations++;
+    }
+
+    /* twoOpt - Reverse a random segment of the route
+     *
+     *  @return             : void
+     *  @route              : the route
+     */
+    private void twoOpt(Route route) {
+        if (route.size < 2) {
+            return;
+        }
+
+        int from = random.nextInt(route.size - 1);
+        int to = from + 1 + random.nextInt(route.size - from - 1);
+        route.reverse(from, to);
+    }
+
+    /* orOpt - Move a random segment of at most MAX_SEGMENT places to another position
+     *
+     *  @return             : void
+     *  @route              : the route
+     */
+    private void orOpt(Route route) {
+        if (route.size < 2) {
+            return;
+        }
+
+        int length = 1 + random.nextInt(Math.min(MAX_SEGMENT, route.size - 1));
+        int from = random.nextInt(route.size - length + 1);
+        int[] segment = new int[length];
+        for (int i = 0; i < length; i++) {
+            segment[i] = route.remove(from);
+        }
+
+        int to = random.nextInt(route.size + 1);
+        for (int i = 0; i < length; i++) {
+            route.insert(to + i, segment[i]);
+        }
+    }
+
+    /* swap - Replace a random place of the route with a random place which is not in the route
+     *
+     *  @return             : void
+     *  @route              : the route
+     */
+    private void swap(Route route) {
+        int outside = randomOutside(route);
+        if (outside < 0) {
+            return;
+        }
+        route.places[random.nextInt(route.size)] = outside;
+    }
+
+    /* destroy - Remove between 1 and a third of the places of the route (at random)
+     *
+     *  @return             : void
+     *  @route              : the route
+     */
+    private void destroy(Route route) {
+        int count = 1 + random.nextInt(Math.max(1, route.size / 3));
+        for (int i = 0; i < count && route.size > 0; i++) {
+            route.remove(random.nextInt(route.size));
+        }
+    }
+
+    /* repair - Insert the places which are not in the route one by one, each time the place and the position
+     *          bringing the best score, while the score improves
+     *
+     *  @return             : void
+     *  @route              : the route (evaluated when the method returns)
+     */
+    private void repair(Route route) {
+        evaluate(route);
+
+        while (route.size < n) {
+            insertion.score = route.score;
+            insertion.size = 0;
+
+            for (int index = 0; index < n; index++) {
+                if (route.contains(index)) {
+                    continue;
+                }
+                for (int position = 0; position <= route.size; position++) {
+                    trial.copyFrom(route);
+                    trial.insert(position, index);
+                    evaluate(trial);
+                    if (trial.score > insertion.score) {
+                        insertion.copyFrom(trial);
+                    }
+                }
+            }
+
+            if (insertion.size == 0) {
+                return;
+            }
+            route.copyFrom(insertion);
+        }
+    }
+
+    /* randomOutside - Get a random place which is not in the route
+     *
+     *  @return             : local index of the place or -1 if all the places are in the route
+     *  @route              : the route
+     */
+    private int randomOutside(Route route) {
+        int count = n - route.size;
+        if (count <= 0) {
+            return -1;
+        }
+
+        int skip = random.nextInt(count);
+        for (int index = 0; index < n; index++) {
+            if (!route.contains(index) && skip-- == 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,135 @@
+package com.holiholic.planner.planner;
+
+import java.util.BitSet;
+
+/* PlaceMask - A set of places represented by their local index (0 .. n - 1) in the current request
+ *             Up to 64 places it is a single long bitmask, otherwise it falls back to a BitSet
+ *             Membership, removal and intersection are word operations instead of hashing or scanning
+ *
+ */
+final class PlaceMask {
+    private long word;
+    private final BitSet bits;
+
+    PlaceMask(int size) {
+        this.bits = size > Long.SIZE ? new BitSet(size) : null;
+    }
+
+    PlaceMask(PlaceMask other) {
+        this.word = other.word;
+        this.bits = other.bits == null ? null : (BitSet) other.bits.clone();
+    }
+
+    /* assign - Replace the places of the set with the ones from a bitmask
+     *          Only for sets created for at most 64 places
+     *
+     *  @return             : void
+     *  @mask               : the bitmask of local indexes
+     */
+    void assign(long mask) {
+        word = mask;
+    }
+
+    /* clear - Remove all the places from the set
+     *
+     *  @return             : void
+     */
+    void clear() {
+        if (bits == null) {
+            word = 0;
+        } else {
+            bits.clear();
+        }
+    }
+
+    /* contains - Checks if the place is in the set
+     *
+     *  @return             : true/false
+     *  @index              : local index of the place
+     */
+    boolean contains(int index) {
+        if (bits == null) {
+            return (word & (1L << index)) != 0;
+        }
+        return bits.get(index);
+    }
+
+    /* add - Add a place to the set
+     *
+     *  @return             : void
+     *  @index              : local index of the place
+     */
+    void add(int index) {
+        if (bits == null) {
+            word |= 1L << index;
+        } else {
+            bits.set(index);
+        }
+    }
+
+    /* remove - Remove a place from the set
+     *
+     *  @return             : true if the place was in the set
+     *  @index              : local index of the place
+     */
+    boolean remove(int index) {
+        boolean contained = contains(index);
+        if (bits == null) {
+            word &= ~(1L << index);
+        } else {
+            bits.clear(index);
+        }
+        return contained;
+    }
+
+    /* isEmpty - Checks if the set is empty
+     *
+     *  @return             : true/false
+     */
+    boolean isEmpty() {
+        if (bits == null) {
+            return word == 0;
+        }
+        return bits.isEmpty();
+    }
+
+    /* size - Get the number of places in the set
+     *
+     *  @return             : the number of places
+     */
+    int size() {
+        if (bits == null) {
+            return Long.bitCount(word);
+        }
+        return bits.cardinality();
+    }
+
+    /* next - Get the first place in the set having the local index greater or equal than the given one
+     *        Used to iterate: for (int i = mask.next(0); i >= 0; i = mask.next(i + 1))
+     *
+     *  @return             : the local index or -1 if there is no such place
+     *  @from               : where to start searching
+     */
+    int next(int from) {
+        if (bits == null) {
+            if (from >= Long.SIZE) {
+                return -1;
+            }
+            long remaining = word & (-1L << from);
+            return remaining == 0 ? -1 : Long.numberOfTrailingZeros(remaining);
+        }
+        return bits.nextSetBit(from);
+    }
+
+    /* intersects - Checks if the two sets have at least one place in common
+     *
+     *  @return             : true/false
+     *  @other              : the other set (must be created for the same number of places)
+     */
+    boolean intersects(PlaceMask other) {
+        if (bits == null) {
+            return (word & other.word) != 0;
+        }
+        return bits.intersects(other.bits);
+    }
+}
@@ -0,0 +1,180 @@
+package com.holiholic.planner.planner;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/* PlanCache - Caches the serialized plans by the canonical form of their requests (see PlanManager.getCacheKey)
+ *             The cache keeps at most maxSize plans (the least recently used one is evicted first), each one for at
+ *             most ttl milliseconds, and the plans of a city are dropped when its places or distances are updated
+ *             Identical requests arriving while a plan is computed wait for that plan instead of planning again
+ *             A plan can be kept out of the cache when it is computed (for example if its search was cut short)
+ *
+ */
+final class PlanCache {
+    private final int maxSize;
+    private final long ttl;
+    // the plans in access order, guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // the plans being computed, guarded by this
+    private final Map<String, Computation> computing = new HashMap<>();
+    // incremented for a city each time it is invalidated, so the plans computed before are not cached, guarded by this
+    private final Map<String, Long> generations = new HashMap<>();
+
+    /* Entry - A cached plan
+     *
+     */
+    private static class Entry {
+        private final String cityName;
+        private final String plan;
+        private final long expiresAt;
+
+        private Entry(String cityName, String plan, long expiresAt) {
+            this.cityName = cityName;
+            this.plan = plan;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /* Computation - A plan being computed, the generation of its city is the one when the computation started
+     *
+     */
+    private static class Computation extends CompletableFuture<String> {
+        private final long generation;
+
+        private Computation(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    PlanCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+    }
+
+    /* get - Get the plan of a request from the cache, wait for it if it is computed by another thread or compute it
+     *       If the computation fails, nothing is cached and the exception is thrown to all the waiting threads
+     *
+     *  @return             : the serialized plan
+     *  @cityName           : the city of the request
+     *  @key                : the canonical form of the request
+     *  @planner            : computes the plan
+     */
+    String get(String cityName, String key, Supplier<String> planner) {
+        return get(cityName, key, planner, () -> true);
+    }
+
+    /* get - Same as above, but the computed plan is cached only if cacheable is true after computing it, the threads
+     *       waiting for the computation get the plan anyway
+     *
+     *  @return             : the serialized plan
+     *  @cityName           : the city of the request
+     *  @key                : the canonical form of the request
+     *  @planner            : computes the plan
+     *  @cacheable          : checks if the computed plan can be cached
+     */
+    String get(String cityName, String key, Supplier<String> planner, BooleanSupplier cacheable) {
+        if (maxSize <= 0) {
+            return planner.get();
+        }
+
+        Computation computation;
+        Computation created = null;
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                return entry.plan;
+            }
+            entries.remove(key);
+
+            long generation = generations.getOrDefault(cityName, 0L);
+            computation = computing.get(key);
+            // a computation started before the city was invalidated is not joined
+            if (computation == null || computation.generation != generation) {
+                created = new Computation(generation);
+                computing.put(key, created);
+            }
+        }
+
+        if (created == null) {
+            return join(computation);
+        }
+        return compute(cityName, key, planner, cacheable, created);
+    }
+
+    /* invalidate - Drop the plans of the city, including the ones computed now
+     *
+     *  @return             : void
+     *  @cityName           : the city
+     */
+    synchronized void invalidate(String cityName) {
+        generations.merge(cityName, 1L, Long::sum);
+        entries.values().removeIf(entry -> entry.cityName.equals(cityName));
+    }
+
+    /* compute - Compute the plan and give it to the threads waiting for it
+     *
+     *  @return             : the serialized plan
+     *  @cityName           : the city of the request
+     *  @key                : the canonical form of the request
+     *  @planner            : computes the plan
+     *  @cacheable          : checks if the computed plan can be cached
+     *  @computation        : the computation of the plan (registered in computing)
+     */
+    private String compute(String cityName, String key, Supplier<String> planner, BooleanSupplier cacheable,
+                           Computation computation) {
+        try {
+            String plan = planner.get();
+            put(cityName, key, cacheable.getAsBoolean() ? plan : null, computation);
+            computation.complete(plan);
+            return plan;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                computing.remove(key, computation);
+            }
+            computation.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /* put - Cache a computed plan, unless its city was invalidated while it was computed
+     *
+     *  @return             : void
+     *  @cityName           : the city of the request
+     *  @key                : the canonical form of the request
+     *  @plan               : the serialized plan (null if it is not cached)
+     *  @computation        : the computation of the plan
+     */
+    private synchronized void put(String cityName, String key, String plan, Computation computation) {
+        computing.remove(key, computation);
+        if (plan == null || generations.getOrDefault(cityName, 0L) != computation.generation) {
+            return;
+        }
+
+        entries.put(key, new Entry(cityName, plan, System.nanoTime() + ttl * 1000000));
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /* join - Wait for a plan computed by another thread
+     *
+     *  @return             : the serialized plan
+     *  @future             : the computation
+     */
+    private static String join(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+}
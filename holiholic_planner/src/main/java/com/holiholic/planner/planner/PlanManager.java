@@ -1,15 +1,21 @@
 package com.holiholic.planner.planner;
 
+import com.holiholic.planner.constant.Constants;
 import com.holiholic.planner.database.DatabaseManager;
 import com.holiholic.planner.models.Place;
 import com.holiholic.planner.travel.City;
 import com.holiholic.planner.utils.CloneFactory;
 import com.holiholic.planner.utils.Enums;
+import com.holiholic.planner.utils.Interval;
+import com.holiholic.planner.utils.ThreadManager;
 import com.holiholic.planner.utils.TimeFrame;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -19,6 +25,7 @@ import java.util.logging.Logger;
  */
 public class PlanManager {
     private static final Logger LOGGER = Logger.getLogger(PlanManager.class.getName());
+    private static final PlanCache PLAN_CACHE = new PlanCache(Constants.PLAN_CACHE_SIZE, Constants.PLAN_CACHE_TTL_MS);
 
     /* setLogger - Configure the logger
      *
@@ -66,12 +73,350 @@ public class PlanManager {
         return places;
     }
 
+    /* setSearchMode - Choose how the planner searches by the number of places (including the meals)
+     *                 The small requests are planned by the exact search, the large ones by the beam search
+     *                 The searches can also race in a portfolio (portfolio field of the request)
+     *                 The beam width is taken from the request (beamWidth field) or from the city
+     *                 The number of itineraries is taken from the request (alternatives field), a larger one prunes
+     *                 less of the search
+     *
+     *  @return             : void
+     *  @planner            : the planner
+     *  @city               : the city instance
+     *  @body               : the body of the HTTP POST request
+     *  @size               : the number of places to plan
+     */
+    private static void setSearchMode(Planner planner, City city, JSONObject body, int size) {
+        if (body.optBoolean("portfolio", Constants.PORTFOLIO)) {
+            planner.setSearchMode(Enums.SearchMode.PORTFOLIO);
+            planner.setBeamWidth(Math.max(1, body.optInt("beamWidth", city.getBeamWidth())));
+        } else if (size <= Constants.EXACT_SEARCH_MAX_PLACES) {
+            planner.setSearchMode(Enums.SearchMode.EXACT);
+        } else if (size >= Constants.BEAM_SEARCH_MIN_PLACES) {
+            planner.setSearchMode(Enums.SearchMode.BEAM);
+            planner.setBeamWidth(Math.max(1, body.optInt("beamWidth", city.getBeamWidth())));
+        }
+        planner.setAlternatives(getAlternatives(body));
+    }
+
+    /* getAlternatives - Get the number of itineraries of the plan requested (alternatives field), at least one and at
+     *                   most PLANNER_MAX_ALTERNATIVES
+     *
+     *  @return             : the number of itineraries
+     *  @body               : the body of the HTTP POST request
+     */
+    private static int getAlternatives(JSONObject body) {
+        int alternatives = body.optInt("alternatives", Constants.PLANNER_ALTERNATIVES);
+        return Math.max(1, Math.min(alternatives, Constants.PLANNER_MAX_ALTERNATIVES));
+    }
+
+    /* getCacheKey - Get the canonical form of a request, the requests having the same form get the same plan
+     *               The places are sorted by id, the start location is rounded (see PLAN_CACHE_START_PRECISION)
+     *               and the user is not part of it
+     *
+     *  @return             : the canonical form
+     *  @cityName           : the city name
+     *  @body               : the body of the HTTP POST request
+     *  @places             : the places to plan
+     *  @timeFrame          : the time frame of the user
+     *  @start              : the start place
+     *  @timeLimit          : how long the planner searches
+     */
+    private static String getCacheKey(String cityName, JSONObject body, List<Place> places, TimeFrame timeFrame,
+                                      Place start, long timeLimit) {
+        JSONObject preferences = body.getJSONObject("preferences");
+        List<Place> sortedPlaces = new ArrayList<>(places);
+        sortedPlaces.sort(Comparator.comparingInt(place -> place.id));
+        StringBuilder key = new StringBuilder(cityName);
+
+        for (Place place : sortedPlaces) {
+            key.append('|').append(place.id).append(',').append(place.durationVisit).append(',')
+               .append(place.visitInside).append(',').append(place.fixedAt);
+        }
+        key.append('|').append(timeFrame.serialize())
+           .append('|').append(preferences.getString("travelMode"))
+           .append('|').append(Math.round(preferences.getDouble("heuristicValue") * 100))
+           .append('|').append(preferences.getBoolean("breakfast"))
+           .append(',').append(preferences.getBoolean("lunch"))
+           .append(',').append(preferences.getBoolean("dinner"))
+           .append('|').append(Math.round(start.location.latitude / Constants.PLAN_CACHE_START_PRECISION))
+           .append(',').append(Math.round(start.location.longitude / Constants.PLAN_CACHE_START_PRECISION))
+           .append('|').append(body.optBoolean("portfolio", Constants.PORTFOLIO))
+           .append(',').append(body.optInt("beamWidth", 0))
+           .append(',').append(timeLimit)
+           .append(',').append(getAlternatives(body));
+
+        return key.toString();
+    }
+
+    /* setStart - Put the start place of the request in a plan, which can be computed for a request having a start
+     *            place close to it (see getCacheKey)
+     *
+     *  @return             : the serialized plan
+     *  @plan               : the serialized plan
+     *  @start              : the start place of the request
+     */
+    private static String setStart(String plan, Place start) {
+        JSONArray itineraries = new JSONArray(plan);
+        setStart(itineraries, start);
+        return itineraries.toString(2);
+    }
+
+    /* setStart - Same as above, on the parsed plan
+     *
+     *  @return             : void
+     *  @itineraries        : the plan
+     *  @start              : the start place of the request
+     */
+    private static void setStart(JSONArray itineraries, Place start) {
+        for (int i = 0; i < itineraries.length(); i++) {
+            JSONArray route = itineraries.getJSONObject(i).getJSONArray("route");
+            for (int j = 0; j < route.length(); j++) {
+                JSONObject place = route.getJSONObject(j);
+                if (place.getInt("id") == start.id) {
+                    place.put("name", start.name);
+                    place.put("latitude", start.location.latitude);
+                    place.put("longitude", start.location.longitude);
+                }
+            }
+        }
+    }
+
+    /* invalidatePlans - Drop the cached plans of a city, called when its places or distances are updated
+     *
+     *  @return             : void
+     *  @cityName           : the city name
+     */
+    public static void invalidatePlans(String cityName) {
+        PLAN_CACHE.invalidate(cityName.toLowerCase());
+        LOGGER.log(Level.FINE, "Dropped the cached plans of {0} city", cityName);
+    }
+
+    /* getRemainingTimeFrame - Get the part of the user time frame which is left in the planning day
+     *
+     *  @return             : the time frame (null if the planning day is over)
+     *  @timeFrame          : the serialized time frame of the user
+     *  @day                : the planning day
+     *  @time               : the current time (hour and minutes, 0930 means 09:30)
+     */
+    private static TimeFrame getRemainingTimeFrame(JSONArray timeFrame, int day, String time) {
+        JSONObject period = null;
+        JSONObject nonStop = null;
+
+        for (int i = 0; i < timeFrame.length(); i++) {
+            JSONObject candidate = timeFrame.getJSONObject(i);
+            if (candidate.getJSONObject("open").getInt("day") == day) {
+                period = candidate;
+                break;
+            }
+            // a period without a close is non stop, it is taken only if the planning day has no period of its own
+            if (nonStop == null && !candidate.has("close")) {
+                nonStop = candidate;
+            }
+        }
+        if (period == null) {
+            period = nonStop;
+        }
+        if (period == null) {
+            return null;
+        }
+        period = new JSONObject(period.toString());
+
+        JSONObject open = period.getJSONObject("open");
+        if (!period.has("close")) {
+            // non stop
+            period.put("close", new JSONObject().put("day", day).put("time", "2359"));
+        }
+        JSONObject close = period.getJSONObject("close");
+        if (close.getInt("day") == day && close.getString("time").compareTo(time) <= 0) {
+            return null;
+        }
+        if (open.getString("time").compareTo(time) < 0) {
+            open.put("time", time);
+        }
+        open.put("day", day);
+
+        return TimeFrame.deserialize(new JSONArray().put(period));
+    }
+
+    /* getRemainingPlaces - Get the places of the itinerary which are not done yet
+     *                      A fixed place (a meal too) keeps its fixed time if the time is still ahead, a meal of an
+     *                      itinerary without the fixed times takes its planned hour
+     *
+     *  @return             : a list of places (internal representation) to plan
+     *  @city               : the city instance
+     *  @itinerary          : the itinerary being executed
+     *  @done               : the ids of the places done (or skipped) by the user
+     *  @time               : the current time (hour and minutes, 0930 means 09:30)
+     */
+    private static List<Place> getRemainingPlaces(City city, List<Place> itinerary, Set<Integer> done, String time) {
+        List<Place> places = new ArrayList<>();
+        Set<Integer> placesIds = new HashSet<>();
+
+        for (Place visit : itinerary) {
+            if (done.contains(visit.id) || !city.getPlaces().containsKey(visit.id) || !placesIds.add(visit.id)) {
+                continue;
+            }
+
+            // need this clone to avoid concurrent modifications
+            Place place = city.getPlaces().get(visit.id).copy();
+            place.visitInside = visit.visitInside;
+            place.durationVisit = visit.durationVisit;
+            place.mealType = visit.mealType;
+            String fixedAt = visit.fixedAt;
+            if (fixedAt.equals("anytime") && visit.mealType != Enums.MealType.UNKNOWN && visit.plannedHour != null) {
+                fixedAt = Interval.serialize(visit.plannedHour);
+            }
+            if (!fixedAt.equals("anytime") && fixedAt.compareTo(time) > 0) {
+                place.fixedAt = fixedAt;
+            }
+
+            places.add(place);
+        }
+
+        return places;
+    }
+
+    /* replan - Plan again the rest of an itinerary which is partially executed (the user is late or skipped places)
+     *          The places of the itinerary which are not done are planned from the current position, starting at
+     *          the current time, until the end of the user time frame (no other places or meals are added)
+     *          The search runs at most REPLAN_TIME_LIMIT_MS, so the itinerary can be replanned at every delay
+     *
+     *  @return             : the serialized plan of the remaining places (ranked, like getPlan)
+     *  @body               : the body of the HTTP POST request, the city, uid and preferences fields of getPlan and
+     *                        itinerary (the route of an itinerary of the plan), time (0930 means 09:30),
+     *                        position (like the start of getPlan) and done (the ids of the places done or skipped)
+     */
+    public static String replan(JSONObject body) {
+        return replan(body, System.nanoTime());
+    }
+
+    /* replan - Same as above, but the time limit counts from when the request was received
+     *
+     *  @return             : the serialized plan of the remaining places (ranked, like getPlan)
+     *  @body               : the body of the HTTP POST request
+     *  @received           : when the request was received (System.nanoTime)
+     */
+    public static String replan(JSONObject body, long received) {
+        try {
+            String cityName = body.getString("city").toLowerCase();
+            String uid = body.getString("uid");
+
+            if (!DatabaseManager.containsUser(uid)) {
+                LOGGER.log(Level.FINE, "User {0} does not exist in the system and can not replan in {1} city",
+                           new Object[]{uid, cityName});
+                return "[]";
+            }
+
+            JSONObject preferences = body.getJSONObject("preferences");
+            TimeFrame timeFrame = TimeFrame.deserialize(preferences.getJSONArray("timeFrame"));
+            String time = body.getString("time");
+
+            if (timeFrame.getOpenDays().isEmpty()) {
+                LOGGER.log(Level.FINE, "Invalid request from user {0} to replan in {1} city, because time frame is " +
+                           "missing", new Object[]{uid, cityName});
+                return "[]";
+            }
+            timeFrame = getRemainingTimeFrame(preferences.getJSONArray("timeFrame"), timeFrame.getOpenDays().get(0),
+                                              time);
+            if (timeFrame == null) {
+                LOGGER.log(Level.FINE, "The time frame of user {0} in {1} city is over at {2}",
+                           new Object[]{uid, cityName, time});
+                return "[]";
+            }
+
+            City city = DatabaseManager.getCity(cityName);
+            if (city == null) {
+                LOGGER.log(Level.FINE, "Server error: city instance is null");
+                return "[]";
+            }
+            JSONArray route = body.optJSONArray("itinerary");
+            if (route == null) {
+                route = body.getJSONObject("itinerary").getJSONArray("route");
+            }
+            List<Place> itinerary = Planner.deserializePlacesFromItinerary(route);
+            if (itinerary == null) {
+                LOGGER.log(Level.FINE, "Invalid itinerary from user {0} to replan in {1} city",
+                           new Object[]{uid, cityName});
+                return "[]";
+            }
+            Set<Integer> done = new HashSet<>();
+            JSONArray doneIds = body.optJSONArray("done");
+            for (int i = 0; doneIds != null && i < doneIds.length(); i++) {
+                done.add(doneIds.getInt(i));
+            }
+            List<Place> places = getRemainingPlaces(city, itinerary, done, time);
+            Place start = Place.deserializeStart(body.getJSONObject("position"));
+
+            if (!city.hasDurations()) {
+                city.setDurations();
+            }
+            if (!city.hasDistances()) {
+                city.setDistances();
+            }
+
+            Enums.TravelMode travelMode = Enums.TravelMode.deserialize(preferences.getString("travelMode"));
+            Planner planner = new Planner(city, timeFrame, travelMode);
+            planner.setHeuristicValue(preferences.getDouble("heuristicValue"));
+            planner.setStart(start);
+            setSearchMode(planner, city, body, places.size());
+            planner.setTimeLimit(Constants.REPLAN_TIME_LIMIT_MS);
+            planner.setRequestDeadline(received + TimeUnit.MILLISECONDS.toNanos(Constants.REPLAN_TIME_LIMIT_MS));
+            if (places.size() > Constants.EXACT_SEARCH_MAX_PLACES
+                && planner.getSearchMode() != Enums.SearchMode.PORTFOLIO) {
+                planner.setImprovementTime(Math.min(Constants.IMPROVEMENT_TIME_MS, Constants.REPLAN_TIME_LIMIT_MS / 4));
+            }
+
+            LOGGER.log(Level.FINE, "Replan for user {0} in {1} city the {2} places left at {3}",
+                       new Object[]{uid, cityName, places.size(), time});
+
+            return Planner.serialize(planner.getPlan(places)).toString(2);
+        } catch (RejectedExecutionException e) {
+            // the server is overloaded, the request is answered with 503
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return "[]";
+        }
+    }
+
     /* getPlan - Generate the plan given a json request, this method is not exposed!
      *
      *  @return             : the serialized plan
      *  @body               : the body of the HTTP POST request
      */
     public static String getPlan(JSONObject body) {
+        return getPlan(body, null);
+    }
+
+    /* getPlan - Same as above, but each itinerary which improves the best score is also given to the listener
+     *           while planning (serialized like an element of the plan), so it can be streamed to the client
+     *           The optional field maxLatencyMs of the request limits how long the planner searches
+     *           The plans are cached (see getCacheKey) and identical requests are planned only once at a time,
+     *           a request served by the cache or by another request does not call the listener
+     *           A plan is not cached if the request waited so long for a thread that its search was cut short
+     *           With the optional field profile set to true, the request is planned without the cache and the plan
+     *           is returned next to the profile of its search (see getProfiledPlan)
+     *           With the optional field multiDay set to true, the places are planned over all the open days of the user
+     *           (see getMultiDayPlan)
+     *
+     *  @return             : the serialized plan (ranked)
+     *  @body               : the body of the HTTP POST request
+     *  @listener           : called from the planner threads with each improved itinerary (can be null)
+     */
+    public static String getPlan(JSONObject body, Consumer<String> listener) {
+        return getPlan(body, listener, System.nanoTime());
+    }
+
+    /* getPlan - Same as above, but the time limit counts from when the request was received, so the time it waited
+     *           (for a thread or for the city) is part of it and no search runs after the response is due
+     *
+     *  @return             : the serialized plan (ranked)
+     *  @body               : the body of the HTTP POST request
+     *  @listener           : called from the planner threads with each improved itinerary (can be null)
+     *  @received           : when the request was received (System.nanoTime)
+     */
+    public static String getPlan(JSONObject body, Consumer<String> listener, long received) {
         try {
             String cityName = body.getString("city").toLowerCase();
             String uid = body.getString("uid");
@@ -99,40 +444,171 @@ public class PlanManager {
                 LOGGER.log(Level.FINE, "Server error: city instance is null");
                 return "[]";
             }
-            Enums.TravelMode travelMode = Enums.TravelMode.deserialize(preferences.getString("travelMode"));
-            double heuristicValue = preferences.getDouble("heuristicValue");
-            boolean breakfast = preferences.getBoolean("breakfast");
-            boolean lunch = preferences.getBoolean("lunch");
-            boolean dinner = preferences.getBoolean("dinner");
             Place start = Place.deserializeStart(body.getJSONObject("start"));
             List<Place> places = getPlaces(city, body.getJSONArray("places"));
 
+            long matrixStart = System.nanoTime();
             if (!city.hasDurations()) {
                 city.setDurations();
             }
             if (!city.hasDistances()) {
                 city.setDistances();
             }
+            long matrixTime = System.nanoTime() - matrixStart;
+
+            long maxLatency = body.optLong("maxLatencyMs", Constants.PLANNER_TIME_LIMIT_MS);
+            long timeLimit = Constants.PLANNER_TIME_LIMIT_MS;
+            if (maxLatency > 0) {
+                timeLimit = Math.min(maxLatency, Constants.PLANNER_TIME_LIMIT_MS);
+            }
+
+            if (body.optBoolean("multiDay", false) && timeFrame.getOpenDays().size() > 1) {
+                return getMultiDayPlan(cityName, city, timeFrame, body, places, start, timeLimit, received);
+            }
 
             // create the planner
-            Planner planner = new Planner(city, timeFrame, travelMode);
-            planner.setHeuristicValue(heuristicValue);
-            planner.setStart(start);
-            planner.setBreakfast(breakfast);
-            planner.setLunch(lunch);
-            planner.setDinner(dinner);
+            Planner planner = createPlanner(city, timeFrame, body, start, places.size(), timeLimit);
+            planner.setRequestDeadline(received + TimeUnit.MILLISECONDS.toNanos(timeLimit));
+            if (listener != null) {
+                planner.setItineraryListener(itinerary -> listener.accept(Planner.serializeItinerary(itinerary)
+                                                                                 .toString()));
+            }
+
+            if (body.optBoolean("profile", false)) {
+                // the profile describes a search, so the request is never served by the cache
+                return getProfiledPlan(cityName, planner, places, matrixTime, received);
+            }
 
-            LOGGER.log(Level.FINE, "Generate a plan for user {0} in {1} city having {2} places",
-                       new Object[]{uid, cityName, places.size()});
+            String key = getCacheKey(cityName, body, places, timeFrame, start, timeLimit);
+            String plan = PLAN_CACHE.get(cityName, key, () -> {
+                LOGGER.log(Level.FINE, "Generate a plan for user {0} in {1} city having {2} places",
+                           new Object[]{uid, cityName, places.size()});
 
-            List<List<Place>> plan = planner.getPlan(places);
+                List<List<Place>> itineraries = planner.getPlan(places);
+                LOGGER.log(Level.FINE, "The best itinerary for user {0} in {1} city was found by the {2} search, " +
+                           "using {3} ms of CPU time", new Object[]{uid, cityName, planner.getWinner(),
+                           TimeUnit.NANOSECONDS.toMillis(planner.getCpuTime())});
 
-            DatabaseManager.savePlan(cityName, plan);
+                ThreadManager.persist(() -> DatabaseManager.savePlan(cityName, itineraries));
+                return Planner.serialize(itineraries).toString(2);
+            }, () -> planner.getSearchShortfall() <= Constants.PLAN_CACHE_MAX_SHORTFALL_MS);
 
-            return Planner.serialize(plan).toString(2);
+            return setStart(plan, start);
+        } catch (RejectedExecutionException e) {
+            // the server is overloaded, the request is answered with 503
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return "[]";
         }
     }
+
+    /* createPlanner - Create the planner of a request, configured by the preferences and the fields of the request
+     *
+     *  @return             : the planner
+     *  @city               : the city instance
+     *  @timeFrame          : the time frame of the user
+     *  @body               : the body of the HTTP POST request
+     *  @start              : the start place (the planner changes it)
+     *  @places             : the number of places to plan
+     *  @timeLimit          : how long the planner searches (milliseconds)
+     */
+    private static Planner createPlanner(City city, TimeFrame timeFrame, JSONObject body, Place start, int places,
+                                         long timeLimit) {
+        JSONObject preferences = body.getJSONObject("preferences");
+        Enums.TravelMode travelMode = Enums.TravelMode.deserialize(preferences.getString("travelMode"));
+        boolean breakfast = preferences.getBoolean("breakfast");
+        boolean lunch = preferences.getBoolean("lunch");
+        boolean dinner = preferences.getBoolean("dinner");
+
+        Planner planner = new Planner(city, timeFrame, travelMode);
+        planner.setHeuristicValue(preferences.getDouble("heuristicValue"));
+        planner.setStart(start);
+        planner.setBreakfast(breakfast);
+        planner.setLunch(lunch);
+        planner.setDinner(dinner);
+        int meals = (breakfast ? 1 : 0) + (lunch ? 1 : 0) + (dinner ? 1 : 0);
+        setSearchMode(planner, city, body, places + meals);
+        planner.setTimeLimit(timeLimit);
+        // the exact search is already optimal, the other searches are followed by the neighborhood search
+        // (the portfolio runs it next to the other searches)
+        boolean portfolio = planner.getSearchMode() == Enums.SearchMode.PORTFOLIO;
+        if (places + meals > Constants.EXACT_SEARCH_MAX_PLACES && !portfolio) {
+            planner.setImprovementTime(Math.min(Constants.IMPROVEMENT_TIME_MS, timeLimit / 4));
+        }
+
+        return planner;
+    }
+
+    /* getMultiDayPlan - Plan the places over all the open days of the user in a single request (see MultiDayPlanner)
+     *                   The plans are cached like the plans of a day, the itineraries are not streamed
+     *
+     *  @return             : [{"day": the day of the week, "plan": the serialized plan of the day}] (serialized)
+     *  @cityName           : the name of the city
+     *  @city               : the city instance
+     *  @timeFrame          : the time frame of the user (more than one open day)
+     *  @body               : the body of the HTTP POST request
+     *  @places             : the places the user wants to visit
+     *  @start              : the start place
+     *  @timeLimit          : how long all the days are planned (milliseconds)
+     *  @received           : when the request was received (System.nanoTime)
+     */
+    private static String getMultiDayPlan(String cityName, City city, TimeFrame timeFrame, JSONObject body,
+                                          List<Place> places, Place start, long timeLimit, long received) {
+        String key = getCacheKey(cityName, body, places, timeFrame, start, timeLimit) + "|multiDay";
+        // each day changes its own copy of the start place
+        MultiDayPlanner.PlannerFactory factory = (size, limit) -> createPlanner(city, timeFrame, body, start.copy(),
+                                                                                size, limit);
+        MultiDayPlanner planner = new MultiDayPlanner(city, timeFrame, factory, ThreadManager.getPortfolioExecutor());
+        planner.setTimeLimit(timeLimit);
+        planner.setRequestDeadline(received + TimeUnit.MILLISECONDS.toNanos(timeLimit));
+
+        String plan = PLAN_CACHE.get(cityName, key, () -> {
+            Map<Integer, List<List<Place>>> itineraries = planner.getPlan(places);
+            LOGGER.log(Level.FINE, "Generated a plan of {0} days in {1} city having {2} places, {3} places moved " +
+                       "between the days, total score {4}", new Object[]{itineraries.size(), cityName, places.size(),
+                       planner.getMovesCount(), planner.getTotalScore()});
+
+            JSONArray days = new JSONArray();
+            for (Map.Entry<Integer, List<List<Place>>> day : itineraries.entrySet()) {
+                ThreadManager.persist(() -> DatabaseManager.savePlan(cityName, day.getValue()));
+                days.put(new JSONObject().put("day", day.getKey()).put("plan", Planner.serialize(day.getValue())));
+            }
+            return days.toString(2);
+        }, () -> planner.getSearchShortfall() <= Constants.PLAN_CACHE_MAX_SHORTFALL_MS);
+
+        JSONArray days = new JSONArray(plan);
+        for (int i = 0; i < days.length(); i++) {
+            setStart(days.getJSONObject(i).getJSONArray("plan"), start);
+        }
+        return days.toString(2);
+    }
+
+    /* getProfiledPlan - Plan without the cache and return the plan next to the profile of its search
+     *                   The profile of the planner (see Planner.getProfile) is completed with the time spent loading
+     *                   the matrices of the city, serializing the plan and the whole request
+     *
+     *  @return             : {"plan": the serialized plan, "profile": the report} (serialized)
+     *  @cityName           : the name of the city
+     *  @planner            : the planner of the request
+     *  @places             : the places the user wants to visit
+     *  @matrixTime         : how long the matrices were loaded (nanoseconds, 0 if they were loaded before)
+     *  @received           : when the request was received (System.nanoTime)
+     */
+    private static String getProfiledPlan(String cityName, Planner planner, List<Place> places, long matrixTime,
+                                          long received) {
+        planner.setProfile(true);
+        List<List<Place>> itineraries = planner.getPlan(places);
+        ThreadManager.persist(() -> DatabaseManager.savePlan(cityName, itineraries));
+
+        long serializationStart = System.nanoTime();
+        JSONArray plan = Planner.serialize(itineraries);
+        long serializationTime = System.nanoTime() - serializationStart;
+
+        JSONObject profile = planner.getProfile();
+        profile.put("matrixMs", matrixTime / 1e6);
+        profile.put("serializationMs", serializationTime / 1e6);
+        profile.put("totalMs", (System.nanoTime() - received) / 1e6);
+        return new JSONObject().put("plan", plan).put("profile", profile).toString(2);
+    }
 }
@@ -4,17 +4,25 @@ import com.holiholic.planner.constant.Constants;
 import com.holiholic.planner.models.Place;
 import com.holiholic.planner.travel.City;
 import com.holiholic.planner.travel.ItineraryStats;
+import com.holiholic.planner.travel.TravelMatrix;
 import com.holiholic.planner.utils.*;
-import javafx.util.Pair;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /* Planner - The main purpose of this class is to calculate multiple itineraries given the city and user preferences
  *           For each request (user) we need to create a new instance of the planner
@@ -22,10 +30,15 @@ import java.util.logging.Logger;
  */
 public class Planner {
     private static final Logger LOGGER = Logger.getLogger(Planner.class.getName());
-    // best plan starting from a place
-    private Map<Integer, List<Place>> plans = new HashMap<>();
-    // max scores for each place
-    private Map<Integer, Double> maxScores = new HashMap<>();
+    // size of the buffer filled by getDuration
+    static final int TRAVEL_INFO_SIZE = 8;
+    private static final Enums.TravelMode[] TRAVEL_MODES = Enums.TravelMode.values();
+    private static final Enums.PruneReason[] PRUNE_REASONS = Enums.PruneReason.values();
+    // the best itineraries, different from each other (created by init)
+    private TopItineraries topItineraries;
+    // how many itineraries the plan has and how different they are (see TopItineraries)
+    private int alternatives = Constants.PLANNER_ALTERNATIVES;
+    private double minDistance = Constants.PLANNER_MIN_DISTANCE;
     private City city;
     private TimeFrame timeFrame;
     private Place start;
@@ -33,19 +46,102 @@ public class Planner {
     private boolean lunch = false;
     private boolean dinner = false;
     private Enums.TravelMode travelMode;
-    private double globalMaxScore;
+    // the best score found so far by all the tasks of this planner
+    private final Incumbent incumbent = new Incumbent();
     // The heuristic value is used to calculate the score for the places
     // If closer to 1, means the user is interested in minimizing the distance between places
     // If closer to 0, means the user is interested in maximizing the ratings of the places
     private double heuristicValue;
-    // The rewards going from place i to place j at time h
-    private Map<Integer, Map<Integer, Map<Integer, Double>>> rewards;
-    private double[][] durationDriving;
-    private double[][] durationWalking;
-    private double[][] distanceDriving;
-    private double[][] distanceWalking;
-    private int solutionsCount = 0;
+    // The rewards going from place i to place j at hour h, stored at index (h * n + i) * n + j
+    // where i and j are local indexes and n is the number of places
+    private double[] rewards;
+    // the durations and the distances between the places of the city (the same for the whole request)
+    private TravelMatrix matrix;
+    private AtomicInteger solutionsCount = new AtomicInteger();
+    // number of nodes visited by all the tasks (added by each task when it finishes)
+    private LongAdder nodesCount = new LongAdder();
+    // number of nodes (or labels) not extended, by Enums.PruneReason
+    private final LongAdder[] prunesCount = new LongAdder[PRUNE_REASONS.length];
+    // number of nodes (or labels) by the local index of the first place of their itineraries
+    private AtomicLongArray firstPlacesNodes;
+    // the profile of the search is collected (see getProfile)
+    private boolean profile = false;
+    // the improvements of the best score (when the search is profiled), guarded by incumbent
+    private final List<JSONObject> improvements = new ArrayList<>();
+    // CPU time used by the threads working for this planner (nanoseconds, see measure)
+    private final LongAdder cpuTime = new LongAdder();
+    // set while a thread measures its CPU time, so the nested measures are not counted twice
+    private static final ThreadLocal<Boolean> MEASURING = ThreadLocal.withInitial(() -> false);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
     private long startTimeMeasure = 0;
+    // nanoseconds from the start of the search until the first itinerary was saved (-1 if none)
+    private volatile long timeToFirstSolution = -1;
+    // nanoseconds from the start of the search until the best itinerary was saved (-1 if none)
+    private long timeToBestSolution = -1;
+    // how long the planner was initialized, the rewards were generated and the search ran (nanoseconds)
+    private long initTime = 0;
+    private long rewardsTime = 0;
+    private long searchTime = 0;
+    // the search was still running when its time was up
+    private boolean timedOut = false;
+    // how much the deadline of the request cut from the time limit of the search (milliseconds)
+    private long searchShortfall = 0;
+    // the end of the search given by the time limit (System.nanoTime, not changed by stopSearch)
+    private long searchEnd;
+    // the in place search starts with a greedy dive from each first place to get a best score for pruning
+    private boolean warmStart = true;
+    // IN_PLACE changes one state per task and rolls it back, COPY deep copies the context on every call
+    private Enums.SearchMode searchMode = Enums.SearchMode.IN_PLACE;
+    // local index of each place from the request, used by the in place search
+    private Map<Integer, Integer> localIndexes;
+    // the local index of each place from the request by its id (-1 for the other ids), read without boxing
+    private int[] localIndexById;
+    // the places from the request by local index
+    private Place[] indexedPlaces;
+    // the open and fixed masks filled by each thread of the search copying its context to compute the bound
+    private ThreadLocal<PlaceMask[]> boundMasks;
+    // places that can be visited at any time (no need to check the opening hours)
+    private PlaceMask alwaysVisitable;
+    private Enums.PruningBound pruningBound = Enums.PruningBound.ADMISSIBLE;
+    // the best reward of getting to each place (from any place at any hour, without the fixed time bonus)
+    private double[] bestRewardsTo;
+    // the bonus of leaving each place at its fixed time (0 for the places which are not fixed)
+    private double[] fixedBonuses;
+    // local indexes sorted descending by the best reward of getting to the place
+    private int[] byBestReward;
+    // local indexes sorted ascending by the duration of the visit
+    private int[] byDuration;
+    // the start and the end of the user time frame in the planning day (seconds)
+    private int userStart;
+    private int userEnd;
+    // the pool where the planner tasks are executed
+    private ForkJoinPool searchPool = ThreadManager.getSearchPool();
+    // the in place search keeps the time as seconds from the midnight of the planning day
+    // (0 until init takes the first open day of the user, see setPlanningDay)
+    private int planningDay;
+    private LocalDateTime planningDayStart;
+    // the opening hours as seconds, {open, close} at position (index * 8 + dayOfWeek) * 2
+    // where index is the local index of the place or the number of places for the user time frame
+    private int[] openingSeconds;
+    // the fixed time of each place by local index (NOT_PLANNED if it is not fixed)
+    private int[] fixedSeconds;
+    // the number of labels extended for each number of places by the beam search
+    private int beamWidth = Constants.BEAM_WIDTH;
+    // how long the search can run (milliseconds), the best itineraries found until then are returned
+    private long timeLimit = Constants.PLANNER_TIME_LIMIT_MS;
+    // how long the neighborhood search improves the itineraries after the search (milliseconds, 0 to skip it)
+    private long improvementTime = 0;
+    // when the search must stop (System.nanoTime), it is moved earlier when the search is stopped
+    private volatile long deadline = Long.MAX_VALUE;
+    // stopSearch was called before the end given by the time limit, the itineraries are not improved either
+    private volatile boolean stopped = false;
+    // when the response of the request is due (System.nanoTime), no search runs after it
+    private long requestDeadline = Long.MAX_VALUE;
+    // the search which found the best itinerary (the portfolio reports the winner of the race) and its score
+    private Enums.SearchMode winner;
+    private double winnerScore = Double.NEGATIVE_INFINITY;
+    // called with each itinerary which improves the best score (from the thread which found it)
+    private Consumer<List<Place>> itineraryListener;
 
     /* NeighborRewardComparator - Sort (descending) places by their reward by getting from current to neighbor
      *
@@ -70,6 +166,9 @@ public class Planner {
         this.timeFrame = timeFrame;
         this.heuristicValue = 1;
         this.travelMode = travelMode;
+        for (int i = 0; i < prunesCount.length; i++) {
+            prunesCount[i] = new LongAdder();
+        }
         setLogger();
     }
 
@@ -156,6 +255,22 @@ public class Planner {
      *  @fixed              : a priority queue which contains the fixed places
      */
     private double predictScore(Place current, Set<Place> open, LocalDateTime time, PriorityQueue<Place> fixed) {
+        if (pruningBound == Enums.PruningBound.ADMISSIBLE) {
+            // the masks are only used until upperBound returns, so each thread reuses its own
+            PlaceMask[] masks = boundMasks.get();
+            PlaceMask openMask = masks[0];
+            PlaceMask fixedMask = masks[1];
+            openMask.clear();
+            fixedMask.clear();
+            for (Place place : open) {
+                openMask.add(localIndexById[place.id]);
+            }
+            for (Place place : fixed) {
+                fixedMask.add(localIndexById[place.id]);
+            }
+            return upperBound(openMask, fixedMask, localIndexById[current.id], toSeconds(time));
+        }
+
         double maxReward = 0;
         double durationToNext;
         int count = 0;
@@ -168,9 +283,9 @@ public class Planner {
         for (Place place : places) {
             if (place.canVisit(time)) {
                 if (travelMode == Enums.TravelMode.DRIVING) {
-                    durationToNext = Math.min(durationWalking[last.id][place.id], durationDriving[last.id][place.id]);
+                    durationToNext = matrix.getShortestDuration(last.id, place.id);
                 } else {
-                    durationToNext = durationWalking[last.id][place.id];
+                    durationToNext = matrix.getDuration(Enums.TravelMode.WALKING, last.id, place.id);
                 }
 
                 time = time.plusSeconds(place.durationVisit);
@@ -187,6 +302,7 @@ public class Planner {
 
     /* getDuration - Calculates the duration to get from current place to next place
      *               It considers if it is better to just drive or (park, walk to next place and return later after car)
+     *               The travel information is also set on the current place
      *
      *  @return             : an array with information about the travel from current to next
      *  @current            : the current place
@@ -194,69 +310,114 @@ public class Planner {
      *  @carPlaceId         : the id where the car is right now
      */
     private int[] getDuration(Place current, Place next, int carPlaceId) {
+        int[] result = getDuration(current, next, carPlaceId, new int[TRAVEL_INFO_SIZE]);
+
+        current.travelMode = TRAVEL_MODES[result[4]];
+        current.parkHere = result[5] == 1;
+        current.getCarBack = result[6] == 1;
+        current.carPlaceId = result[7];
+        current.carPlaceName = current.getCarBack ? city.getPlaces().get(current.carPlaceId).name : "";
+        return result;
+    }
+
+    /* getDuration - Same as above, but writes the travel information in the given buffer without changing the place
+     *
+     *  @return             : the buffer (duration, returning time walking, next car place id, distance,
+     *                        travel mode ordinal, park here, get car back, car place id to get back)
+     *  @current            : the current place
+     *  @next               : the next place we want to visit
+     *  @carPlaceId         : the id where the car is right now
+     *  @result             : the buffer
+     */
+    private int[] getDuration(Place current, Place next, int carPlaceId, int[] result) {
         int durationToNext;
         int returningTimeWalking = 0;
         int nextCarPlaceId = carPlaceId;
         int distanceToNext;
+        Enums.TravelMode currentTravelMode;
+        boolean parkHere = false;
+        boolean getCarBack = false;
 
         // the duration to neighbor from start place
         if (current.id == -1) {
             durationToNext = getDurationFromStart(next);
             distanceToNext = getDistanceFromStart(next);
-            current.parkHere = false;
             if (travelMode == Enums.TravelMode.DRIVING) {
                 nextCarPlaceId = next.id;
             }
-            current.travelMode = travelMode;
+            currentTravelMode = travelMode;
         } else {
             // if user selected driving, take into consideration if it's closer to walk instead of driving
             if (travelMode == Enums.TravelMode.DRIVING) {
                 if (carPlaceId == current.id) {
-                    current.parkHere = true;
+                    parkHere = true;
                 }
 
                 double durationDrivingValue, durationWalkingValue, distanceDrivingValue;
 
                 if (carPlaceId == current.id) {
-                    durationDrivingValue = durationDriving[current.id][next.id];
-                    distanceDrivingValue = distanceDriving[current.id][next.id];
+                    durationDrivingValue = matrix.getDuration(Enums.TravelMode.DRIVING, current.id, next.id);
+                    distanceDrivingValue = matrix.getDistance(Enums.TravelMode.DRIVING, current.id, next.id);
                 } else {
                     // calculate duration to get where the car is parked and continue from there
-                    durationDrivingValue = durationWalking[current.id][carPlaceId] + durationDriving[carPlaceId][next.id];
-                    distanceDrivingValue = distanceWalking[current.id][carPlaceId] + distanceDriving[carPlaceId][next.id];
+                    durationDrivingValue = matrix.getDuration(Enums.TravelMode.WALKING, current.id, carPlaceId)
+                                           + matrix.getDuration(Enums.TravelMode.DRIVING, carPlaceId, next.id);
+                    distanceDrivingValue = matrix.getDistance(Enums.TravelMode.WALKING, current.id, carPlaceId)
+                                           + matrix.getDistance(Enums.TravelMode.DRIVING, carPlaceId, next.id);
                 }
 
                 // or just walk to the next place
-                durationWalkingValue = durationWalking[current.id][next.id] + durationWalking[next.id][carPlaceId];
+                durationWalkingValue = matrix.getDuration(Enums.TravelMode.WALKING, current.id, next.id)
+                                       + matrix.getDuration(Enums.TravelMode.WALKING, next.id, carPlaceId);
 
                 if (durationDrivingValue < durationWalkingValue) {
                     // walk to next place and remind user to get the car back
                     if (carPlaceId != current.id) {
-                        current.getCarBack = true;
-                        current.carPlaceId = carPlaceId;
-                        current.carPlaceName = city.getPlaces().get(carPlaceId).name;
+                        getCarBack = true;
                     }
 
                     nextCarPlaceId = next.id;
                     durationToNext = (int) durationDrivingValue;
                     distanceToNext = (int) distanceDrivingValue;
-                    current.travelMode = Enums.TravelMode.DRIVING;
+                    currentTravelMode = Enums.TravelMode.DRIVING;
                 } else {
                     // the actual duration is without taking into consideration the returning time for the car
                     // it will be considered later
-                    durationToNext = (int) durationWalking[current.id][next.id];
-                    distanceToNext = (int) distanceWalking[current.id][next.id];
-                    current.travelMode = Enums.TravelMode.WALKING;
-                    returningTimeWalking = (int) durationWalking[next.id][carPlaceId];
+                    durationToNext = matrix.getDuration(Enums.TravelMode.WALKING, current.id, next.id);
+                    distanceToNext = matrix.getDistance(Enums.TravelMode.WALKING, current.id, next.id);
+                    currentTravelMode = Enums.TravelMode.WALKING;
+                    returningTimeWalking = matrix.getDuration(Enums.TravelMode.WALKING, next.id, carPlaceId);
                 }
             } else {
-                durationToNext = (int) durationWalking[current.id][next.id];
-                distanceToNext = (int) distanceWalking[current.id][next.id];
-                current.travelMode = Enums.TravelMode.WALKING;
+                durationToNext = matrix.getDuration(Enums.TravelMode.WALKING, current.id, next.id);
+                distanceToNext = matrix.getDistance(Enums.TravelMode.WALKING, current.id, next.id);
+                currentTravelMode = Enums.TravelMode.WALKING;
             }
         }
 
-        return new int[]{durationToNext, returningTimeWalking, nextCarPlaceId, distanceToNext};
+        result[0] = durationToNext;
+        result[1] = returningTimeWalking;
+        result[2] = nextCarPlaceId;
+        result[3] = distanceToNext;
+        result[4] = currentTravelMode.ordinal();
+        result[5] = parkHere ? 1 : 0;
+        result[6] = getCarBack ? 1 : 0;
+        result[7] = getCarBack ? carPlaceId : -1;
+        return result;
+    }
+
+    /* resetTravel - Clear the travel information of the last place of an itinerary
+     *               Otherwise the flags set while exploring another branch would leak into the itinerary
+     *
+     *  @return             : void
+     *  @place              : the place
+     */
+    private void resetTravel(Place place) {
+        place.travelMode = Enums.TravelMode.UNKNOWN;
+        place.getCarBack = false;
+        place.parkHere = false;
+        place.carPlaceId = -1;
+        place.carPlaceName = "";
     }
 
     /* scheduleFixed - Try to schedule a fixed place because they have higher priority
@@ -324,19 +485,63 @@ public class Planner {
             return;
         }
 
-        if (score > globalMaxScore) {
-            int firstPlaceId = solution.get(1).id;
-            List<Place> itinerary = CloneFactory.clone(solution);
+        if (score > incumbent.get()) {
+            saveItinerary(score, CloneFactory.clone(solution));
+        }
+    }
+
+    /* saveItinerary - Save the itinerary as the best plan starting from its first place if it is the best so far
+     *
+     *  @return                 : void
+     *  @score                  : the score of the itinerary
+     *  @itinerary              : the itinerary (a copy that is not changed anymore)
+     */
+    private void saveItinerary(double score, List<Place> itinerary) {
+        saveItinerary(score, itinerary, searchMode);
+    }
+
+    /* saveItinerary - Same as above, but the search which found the itinerary is given (the portfolio runs several)
+     *
+     *  @return                 : void
+     *  @score                  : the score of the itinerary
+     *  @itinerary              : the itinerary (a copy that is not changed anymore)
+     *  @foundBy                : the search which found the itinerary
+     */
+    private void saveItinerary(double score, List<Place> itinerary, Enums.SearchMode foundBy) {
+        // the searches prune against the worst of the top itineraries, once there are enough of them, the threshold
+        // is published with the itinerary so it drops back when the new itinerary replaced several similar ones
+        synchronized (topItineraries) {
+            if (!topItineraries.add(score, itinerary)) {
+                return;
+            }
+            incumbent.set(topItineraries.getThreshold());
+        }
 
-            synchronized (Planner.class) {
-                if (score > globalMaxScore) {
-                    maxScores.put(firstPlaceId, score);
-                    globalMaxScore = score;
-                    plans.put(firstPlaceId, itinerary);
-                    solutionsCount++;
+        // the improvements are not published in order by the threads, so the winner is kept with its score
+        boolean best;
+        synchronized (incumbent) {
+            best = score > winnerScore;
+            if (best) {
+                winnerScore = score;
+                winner = foundBy;
+                timeToBestSolution = System.nanoTime() - startTimeMeasure;
+                if (profile) {
+                    improvements.add(new JSONObject().put("timeMs", timeToBestSolution / 1e6)
+                                                     .put("score", score)
+                                                     .put("foundBy", foundBy.name()));
                 }
             }
+        }
+
+        if (solutionsCount.incrementAndGet() == 1) {
+            timeToFirstSolution = System.nanoTime() - startTimeMeasure;
+        }
 
+        if (best && itineraryListener != null) {
+            itineraryListener.accept(itinerary);
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
             long estimatedTime = System.nanoTime() - startTimeMeasure;
             double seconds = (double) estimatedTime / 1000000000.0;
             StringBuilder logMessage = new StringBuilder();
@@ -404,6 +609,11 @@ public class Planner {
         solution.add(current);
 
         if (fixed.isEmpty()) {
+            // this is the last place of the itinerary
+            resetTravel(current);
+            current.durationToNext = 0;
+            current.distanceToNext = 0;
+
             if (travelMode == Enums.TravelMode.DRIVING) {
                 if (carPlaceId == current.id) {
                     current.parkHere = true;
@@ -413,8 +623,8 @@ public class Planner {
                     current.travelMode = Enums.TravelMode.WALKING;
                     current.carPlaceId = carPlaceId;
                     current.carPlaceName = city.getPlaces().get(carPlaceId).name;
-                    current.durationToNext = (int) durationWalking[current.id][carPlaceId];
-                    current.distanceToNext = (int) distanceWalking[current.id][carPlaceId];
+                    current.durationToNext = matrix.getDuration(Enums.TravelMode.WALKING, current.id, carPlaceId);
+                    current.distanceToNext = matrix.getDistance(Enums.TravelMode.WALKING, current.id, carPlaceId);
                 }
             }
         }
@@ -451,6 +661,11 @@ public class Planner {
      */
     void visit(Place current, Set<Place> open, List<Place> solution, LocalDateTime time, double score, int carPlaceId,
                int returnDurationToCar, PriorityQueue<Place> fixed) {
+        nodesCount.increment();
+        // a node copies the whole context, checking the time is cheap compared to that
+        if (isTimeUp()) {
+            return;
+        }
         // these object are mutable, therefore not thread-safe, so make deep copies of them
         Set<Place> openCopy = CloneFactory.clone(open);
         List<Place> solutionCopy = CloneFactory.clone(solution);
@@ -478,11 +693,13 @@ public class Planner {
 
         // predict the score for the current solution
         double prediction = predictScore(current, openCopy, time, fixedCopy);
-        if (score + prediction <= globalMaxScore) {
+        if (score + prediction <= incumbent.get()) {
+            prunesCount[Enums.PruneReason.BOUND.ordinal()].increment();
             return;
         }
 
         if (!current.canVisit(time)) {
+            prunesCount[Enums.PruneReason.CLOSED.ordinal()].increment();
             return;
         }
 
@@ -505,272 +722,1621 @@ public class Planner {
         }
     }
 
-    /* createTask - Create a task for each place to be visited from the starting point
-     *              Do not call this method from visit method
+    /* isOpen - Checks if the time frame with the given local index is open at the given time
+     *          The local index of the user time frame is the number of places
      *
-     *  @return                 : void
-     *  @next                   : the place we want to submit
-     *  @open                   : set of unvisited places
-     *  @solution               : the current solution (like an accumulator)
-     *  @fixed                  : a priority queue which contains the fixed places
+     *  @return                 : true/false
+     *  @index                  : local index of the time frame
+     *  @time                   : seconds from the start of the planning day
      */
-    private PlannerTask createTask(Place next, Set<Place> open, List<Place> solution, PriorityQueue<Place> fixed) {
-        try {
-            int dayOfWeek = timeFrame.getOpenDays().get(0);
-            if (!next.timeFrame.isNonStop() && next.timeFrame.isClosed(dayOfWeek)) {
-                return null;
-            }
-
-            LocalDateTime userStartHour = timeFrame.getInterval(dayOfWeek).getStart();
-            LocalDateTime currentTime = null;
-            int durationToNext = getDurationFromStart(next);
-
-            start.plannedHour = userStartHour;
-            userStartHour = userStartHour.plusSeconds(durationToNext);
-            start.durationToNext = durationToNext;
-            start.distanceToNext = getDistanceFromStart(next);
-            start.travelMode = travelMode;
+    private boolean isOpen(int index, int time) {
+        int day = time / Constants.SECONDS_PER_DAY;
+        int second = time - day * Constants.SECONDS_PER_DAY;
+        int dayOfWeek = (planningDay - 1 + day) % 7 + 1;
+        int position = (index * 8 + dayOfWeek) * 2;
 
-            // place can be visited immediately
-            if (next.canVisit(userStartHour)) {
-                currentTime = userStartHour;
-            } else {
-                LocalDateTime placeOpeningHour = next.timeFrame.getInterval(dayOfWeek).getStart();
-                if (timeFrame.canVisit(placeOpeningHour)) {
-                    // start as soon as the place opens
-                    currentTime = placeOpeningHour;
-                }
-            }
+        return openingSeconds[position] < second && second < openingSeconds[position + 1];
+    }
 
-            if (currentTime != null) {
-                solution.add(start);
-                return new PlannerTask(next, open, solution, currentTime, 0.0, next.id, 0, fixed, this);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /* canVisit - Checks if the place with the given local index can be visited at the given time
+     *
+     *  @return                 : true/false
+     *  @index                  : local index of the place
+     *  @time                   : seconds from the start of the planning day
+     */
+    private boolean canVisit(int index, int time) {
+        return alwaysVisitable.contains(index) || isOpen(index, time);
+    }
 
-        return null;
+    /* isTourOver - Same as above, but for the in place search
+     *
+     *  @return                 : true/false
+     *  @time                   : seconds from the start of the planning day
+     *  @current                : local index of the current place
+     */
+    private boolean isTourOver(int time, int current) {
+        int user = localIndexes.size();
+        return !isOpen(user, time) || !isOpen(user, time + indexedPlaces[current].durationVisit);
     }
 
-    /* initMaxScores - Initialize max score map for each place, this is the score considering the solution starts
-     *                 with that place
+    /* canVisitAny - Checks if at least one place from the set can be visited at the given time
      *
-     *  @return                 : void
-     *  @places                 : a list of places
+     *  @return                 : true/false
+     *  @places                 : the set of places to check
+     *  @time                   : seconds from the start of the planning day
      */
-    private void initMaxScores(List<Place> places) {
-        globalMaxScore = Double.NEGATIVE_INFINITY;
+    private boolean canVisitAny(PlaceMask places, int time) {
+        if (places.intersects(alwaysVisitable)) {
+            return true;
+        }
 
-        for (Place place : places) {
-            maxScores.put(place.id, Double.NEGATIVE_INFINITY);
+        for (int i = places.next(0); i >= 0; i = places.next(i + 1)) {
+            if (isOpen(i, time)) {
+                return true;
+            }
         }
+        return false;
     }
 
-    /* initMatrix - Get references for distance and duration matrix (from the city instance)
+    /* isSolution - Same as above, but for the search state of the in place search
      *
-     *  @return                 : void
+     *  @return                 : true/false
+     *  @state                  : the search state of the current task
+     *  @time                   : seconds from the start of the planning day
+     *  @current                : local index of the current place
      */
-    private void initMatrix() {
-        durationDriving = city.getDurations(Enums.TravelMode.DRIVING);
-        durationWalking = city.getDurations(Enums.TravelMode.WALKING);
-        distanceDriving = city.getDistances(Enums.TravelMode.DRIVING);
-        distanceWalking = city.getDistances(Enums.TravelMode.WALKING);
+    private boolean isSolution(SearchState state, int time, int current) {
+        if (isTourOver(time, current)) {
+            return true;
+        }
+
+        if (canVisitAny(state.open, time) || canVisitAny(state.fixed, time)) {
+            return false;
+        }
+
+        return state.visited.contains(current) || !canVisit(current, time);
     }
 
-    /* getBestRestaurant - Returns the best restaurant for a specific meal
+    /* sortByReward - Collect the places from the given sets and sort them (descending) by the reward of getting
+     *                from the current place, like NeighborRewardComparator does
+     *                The result is written in the reusable buffers of the search state for the given depth
      *
-     *  @return                 : best restaurant
-     *  @placesIds              : places already chosen
-     *  @type                   : meal type
+     *  @return                 : the number of places sorted
+     *  @state                  : the search state of the current task
+     *  @depth                  : the depth of the buffers to use
+     *  @current                : local index of the current place
+     *  @time                   : seconds from the start of the planning day
+     *  @includeFixed           : if true, the fixed places are sorted too
      */
-    private Place getBestRestaurant(Set<Integer> placesIds, Enums.MealType type) {
-        LocalDateTime time;
-        String timeAsString;
-        List<Place> topRestaurants;
-        Place bestRestaurant = null;
+    private int sortByReward(SearchState state, int depth, int current, int time, boolean includeFixed) {
+        int[] indices = state.indices(depth, state.places.length);
+        double[] keys = state.keys(depth);
+        int size = 0;
 
-        switch (type) {
-            case DINNER:
-                timeAsString = Constants.DEFAULT_DINNER_HOUR;
-                break;
-            case LUNCH:
-                timeAsString = Constants.DEFAULT_LUNCH_HOUR;
-                break;
-            case BREAKFAST:
-                timeAsString = Constants.DEFAULT_BREAKFAST_HOUR;
-                break;
-            default:
-                return null;
+        for (int i = state.open.next(0); i >= 0; i = state.open.next(i + 1)) {
+            indices[size++] = i;
+        }
+        if (includeFixed) {
+            for (int i = state.fixed.next(0); i >= 0; i = state.fixed.next(i + 1)) {
+                indices[size++] = i;
+            }
         }
 
-        time = Interval.getDateTime(timeAsString, timeFrame.getOpenDays().get(0));
-        topRestaurants = city.getTopRestaurants(5, time);
+        // stable insertion sort, the number of places is small
+        for (int i = 0; i < size; i++) {
+            int index = indices[i];
+            double key = getReward(current, index, time);
+            int j = i - 1;
 
-        if (topRestaurants != null && !topRestaurants.isEmpty()) {
-            for (Place restaurant : topRestaurants) {
-                if (!placesIds.contains(restaurant.id)) {
-                    restaurant.fixedAt = timeAsString;
-                    restaurant.fixedTime = time;
-                    restaurant.mealType = type;
-                    bestRestaurant = restaurant;
-                    break;
-                }
+            while (j >= 0 && keys[j] < key) {
+                indices[j + 1] = indices[j];
+                keys[j + 1] = keys[j];
+                j--;
             }
+            indices[j + 1] = index;
+            keys[j + 1] = key;
         }
 
-        return bestRestaurant;
+        return size;
     }
 
-    /* initRestaurants - Check if need to include meals and get the best restaurants and fix them accordingly
+    /* predictScore - Same as above, but for the search state of the in place search
      *
-     *  @return                 : void
-     *  @places                 : restaurants will be added to the list of places which will be used by the planner
+     *  @return             : the predicted score for the current solution
+     *  @state              : the search state of the current task
+     *  @current            : local index of the current place
+     *  @time               : the time of visiting the current place (seconds from the start of the planning day)
      */
-    private void initRestaurants(List<Place> places) {
-        if (!breakfast && !lunch && !dinner) {
-            return;
-        }
-
-        boolean[] mealsIncluded = new boolean[]{dinner, lunch, breakfast};
-        Enums.MealType[] meals = new Enums.MealType[]{Enums.MealType.DINNER, Enums.MealType.LUNCH, Enums.MealType.BREAKFAST};
-        Set<Integer> placesIds = new HashSet<>();
-        Place bestRestaurant;
-        for (Place place : places) {
-            placesIds.add(place.id);
+    double predictScore(SearchState state, int current, int time) {
+        if (pruningBound == Enums.PruningBound.ADMISSIBLE) {
+            return upperBound(state.open, state.fixed, current, time);
         }
 
-        for (int i = 0; i < mealsIncluded.length; i++) {
-            if (mealsIncluded[i]) {
-                bestRestaurant = getBestRestaurant(placesIds, meals[i]);
-                if (bestRestaurant == null) {
-                    continue;
+        double maxReward = 0;
+        double durationToNext;
+        int count = 0;
+        int depth = state.routeSize();
+        int size = sortByReward(state, depth, current, time, true);
+        int[] indices = state.indices(depth, size);
+        Place last = state.places[current];
+        int lastIndex = current;
+
+        for (int i = 0; i < size; i++) {
+            Place place = state.places[indices[i]];
+            if (canVisit(indices[i], time)) {
+                if (travelMode == Enums.TravelMode.DRIVING) {
+                    durationToNext = matrix.getShortestDuration(last.id, place.id);
+                } else {
+                    durationToNext = matrix.getDuration(Enums.TravelMode.WALKING, last.id, place.id);
                 }
-                places.add(bestRestaurant);
-                placesIds.add(bestRestaurant.id);
+
+                time += place.durationVisit;
+                maxReward = Math.max(maxReward, getReward(lastIndex, indices[i], time));
+                time += (int) durationToNext;
+
+                count++;
+                last = place;
+                lastIndex = indices[i];
             }
         }
+
+        return count * maxReward;
     }
 
-    /* initFixedTime - Transform fixed time from string to LocalDateTime to avoid duplicate work
+    /* upperBound - An upper bound (admissible) of the score that can still be added to the current solution
+     *              A reward is collected for each edge current -> neighbor, where the neighbor is an open place:
+     *              - the places still open which fit in the time left (each needs at least its visit duration)
+     *                get at most their best reward, the best ones are summed (prefix of byBestReward)
+     *              - one more reward can be collected for a place which is not visited anymore (the last one)
+     *                and one for each fixed place (a fixed place scheduled first leaves the neighbor open)
+     *              - the places not left yet can add their fixed time bonus
+     *              The orders are computed once per request, so this is a linear scan without allocations
      *
-     *  @return                 : void
-     *  @places                 : places to be visited
+     *  @return             : the bound
+     *  @open               : the open places
+     *  @fixed              : the fixed places not scheduled yet
+     *  @current            : local index of the current place
+     *  @time               : the time of visiting the current place (seconds from the start of the planning day)
      */
-    private void initFixedTime(List<Place> places) {
-        for (Place place : places) {
-            if (!place.fixedAt.equals("anytime")) {
-                place.fixedTime = Interval.getDateTime(place.fixedAt, timeFrame.getOpenDays().get(0));
+    private double upperBound(PlaceMask open, PlaceMask fixed, int current, int time) {
+        long budget = (long) userEnd - time - indexedPlaces[current].durationVisit;
+        int fit = 0;
+        int remaining = 0;
+
+        for (int index : byDuration) {
+            if (index == current || !open.contains(index)) {
+                continue;
+            }
+            remaining++;
+            budget -= indexedPlaces[index].durationVisit;
+            if (budget >= 0) {
+                fit++;
+            }
+        }
+
+        if (remaining == 0) {
+            return fixedBonuses[current];
+        }
+
+        double bound = 0;
+        double maxReward = -1;
+        int count = 0;
+
+        for (int index : byBestReward) {
+            if (index == current || !open.contains(index)) {
+                continue;
             }
+            if (maxReward < 0) {
+                maxReward = bestRewardsTo[index];
+            }
+            if (count == fit) {
+                break;
+            }
+            bound += bestRewardsTo[index];
+            count++;
+        }
+
+        bound += (1 + fixed.size()) * maxReward + fixedBonuses[current];
+        for (int i = fixed.next(0); i >= 0; i = fixed.next(i + 1)) {
+            bound += fixedBonuses[i];
         }
+
+        return bound;
     }
 
-    /* init - Initialize the planner only when the getPlan method is called
+    /* setTravel - Set the travel information computed by getDuration for a place of the search state
+     *             The caller must save the place in the undo log before
      *
      *  @return                 : void
-     *  @places                 : places to be visited
+     *  @state                  : the search state of the current task
+     *  @index                  : local index of the place
+     *  @travel                 : the travel information
      */
-    private void init(List<Place> places) {
-        initMatrix();
-        initRestaurants(places);
-        initFixedTime(places);
-        generateRewards(places);
-        initMaxScores(places);
-        startTimeMeasure = System.nanoTime();
+    private void setTravel(SearchState state, int index, int[] travel) {
+        state.durationsToNext[index] = travel[0];
+        state.distancesToNext[index] = travel[3];
+        state.travelModes[index] = TRAVEL_MODES[travel[4]];
+        state.parkHeres[index] = travel[5] == 1;
+        state.getCarBacks[index] = travel[6] == 1;
+        state.carPlaceIds[index] = travel[7];
     }
 
-    /* getPlan - Generate possible itineraries
+    /* scheduleFixed - Same as above, but changes the search state in place instead of copying it
      *
-     *  @return                 : possible itineraries
-     *  @places                 : a list of places the user wants to visit
+     *  @return                 : true if can visit the current place before the first fixed place otherwise false
+     *  @state                  : the search state of the current task
+     *  @current                : local index of the current place
+     *  @time                   : time at the current place (seconds from the start of the planning day)
+     *  @score                  : current score
+     *  @carPlaceId             : id of the place where is the car parked (if applicable)
+     *  @returnDurationToCar    : duration to walk after the car
      */
-    List<List<Place>> getPlan(List<Place> places) {
-        init(places);
-
-        Set<Place> open = new HashSet<>();
-        List<PlannerTask> plannerTasks = new ArrayList<>();
-        PriorityQueue<Place> fixed = new PriorityQueue<>(Comparator.comparing(p -> p.fixedTime));
-
-        for (Place place : places) {
-            if (!place.fixedAt.equals("anytime")) {
-                fixed.add(place);
-            } else {
-                open.add(place);
-            }
+    private boolean scheduleFixed(SearchState state, int current, int time, double score, int carPlaceId,
+                                  int returnDurationToCar) {
+        int next = state.fixed.next(0);
+        if (next < 0) {
+            return false;
         }
 
-        // only fixed places
-        if (open.isEmpty() && !fixed.isEmpty()) {
-            PlannerTask task = createTask(fixed.poll(), open, new ArrayList<>(), fixed);
-            if (task != null) {
-                plannerTasks.add(task);
-            }
+        Place currentPlace = state.places[current];
+        Place nextPlace = state.places[next];
+        int peekTime = fixedSeconds[next];
+        int[] travel = getDuration(currentPlace, nextPlace, carPlaceId, state.travel);
+        time += currentPlace.durationVisit + travel[0] - returnDurationToCar + travel[1];
+
+        if (time < peekTime) {
+            return false;
         }
-        else {
-            // sort descending by rating and by the remaining time for visiting
-            places.sort((p1, p2) -> {
-                if (p2.rating != p1.rating) {
-                    return Double.compare(p2.rating, p1.rating);
-                }
 
-                if (p1.isNonStop() && p2.isNonStop()) {
-                    return 0;
-                } else if (p1.isNonStop()) {
-                    return 1;
-                } else if (p2.isNonStop()) {
-                    return -1;
-                }
+        state.fixed.remove(next);
 
-                int day = timeFrame.getOpenDays().get(0);
-                return Interval.compareIntervals(p2.timeFrame.getInterval(day), p1.timeFrame.getInterval(day));
-            });
+        if (state.routeSize() > 0) {
+            int last = state.routeAt(state.routeSize() - 1);
+            Place lastPlace = state.places[last];
 
-            for (Place place : places) {
-                if (!open.contains(place)) {
-                    continue;
-                }
-                PlannerTask task = createTask(place, CloneFactory.clone(open), new ArrayList<>(),
-                                              CloneFactory.clone(fixed));
-                if (task != null) {
-                    plannerTasks.add(task);
-                }
+            if (state.carPlaceIds[last] == -1) {
+                carPlaceId = lastPlace.id;
+            } else {
+                carPlaceId = state.carPlaceIds[last];
             }
-        }
 
-        ThreadManager.getInstance().invokeAll(plannerTasks, 5, TimeUnit.SECONDS);
-
-        LOGGER.log(Level.FINE, "Finished planning for the city ({0}). Number of solutions found: {1}",
-                   new Object[]{city.getName(), solutionsCount});
+            state.save(last);
+            travel = getDuration(lastPlace, nextPlace, carPlaceId, state.travel);
+            setTravel(state, last, travel);
+            returnDurationToCar = travel[1];
+            carPlaceId = travel[2];
+            peekTime = state.plannedTimes[last] + lastPlace.durationVisit + travel[0];
+        }
 
-        return sortItineraries();
+        visit(state, next, peekTime, score, carPlaceId, returnDurationToCar);
+        state.fixed.add(next);
+        return true;
     }
 
-    /* sortItineraries - Sorts the plan that will be sent to user
+    /* generateItinerary - Same as above, but the itinerary is created from the search state
+     *                     The places are copied only here, when a better itinerary is found
      *
-     *  @return                 : sorted itineraries based on their score (descending)
+     *  @return                 : void
+     *  @score                  : current score
+     *  @state                  : the search state of the current task
+     *  @foundBy                : the search which found the itinerary
      */
-    private List<List<Place>> sortItineraries() {
-        List<List<Place>> sortedPlans = new ArrayList<>();
-        List<Pair<Double, List<Place>>> plans = new ArrayList<>();
+    private void generateItinerary(double score, SearchState state, Enums.SearchMode foundBy) {
+        if (state.routeSize() < 2) {
+            return;
+        }
 
-        for (Map.Entry<Integer, List<Place>> pair : this.plans.entrySet()) {
-            double score = maxScores.get(pair.getKey());
-            List<Place> placesList = pair.getValue();
-            plans.add(new Pair<>(score, placesList));
+        if (score > incumbent.get()) {
+            saveItinerary(score, createItinerary(state), foundBy);
         }
+    }
+
+    /* createItinerary - Create the itinerary of a search state (copies of the places with the planning information)
+     *
+     *  @return                 : the itinerary
+     *  @state                  : the search state
+     */
+    private List<Place> createItinerary(SearchState state) {
+        List<Place> itinerary = new ArrayList<>(state.routeSize());
 
-        plans.sort((p1, p2) -> p2.getKey().compareTo(p1.getKey()));
+        for (int i = 0; i < state.routeSize(); i++) {
+            int index = state.routeAt(i);
+            Place place = state.places[index].copy();
 
-        for (Pair<Double, List<Place>> pair : plans) {
-            sortedPlans.add(pair.getValue());
+            if (state.plannedTimes[index] != SearchState.NOT_PLANNED) {
+                place.plannedHour = toDateTime(state.plannedTimes[index]);
+            }
+            place.durationToNext = state.durationsToNext[index];
+            place.distanceToNext = state.distancesToNext[index];
+            place.travelMode = state.travelModes[index];
+            place.parkHere = state.parkHeres[index];
+            place.getCarBack = state.getCarBacks[index];
+            place.carPlaceId = state.carPlaceIds[index];
+            place.carPlaceName = place.getCarBack ? city.getPlaces().get(place.carPlaceId).name : "";
+            place.waitTime = state.waitTimes[index];
+            itinerary.add(place);
         }
 
-        return sortedPlans;
+        return itinerary;
     }
 
-    /* evaluateReward - Evaluate the score for going from current place to next place at a given time
+    /* visitNeighbor - Same as above, but changes the search state in place instead of copying it
      *
-     *  @return                 : the reward for going from current place to next place at that time
+     *  @return                 : void
+     *  @state                  : the search state of the current task
+     *  @current                : local index of the current place
+     *  @neighbor               : local index of the next place where can go from here
+     *  @score                  : current score
+     *  @time                   : time at the current place (seconds from the start of the planning day)
+     *  @carPlaceId             : id of the place where is the car parked (if applicable)
+     *  @returnDurationToCar    : duration to walk after the car
+     */
+    void visitNeighbor(SearchState state, int current, int neighbor, double score, int time, int carPlaceId,
+                       int returnDurationToCar) {
+        double reward = getReward(current, neighbor, time);
+        int mark = state.mark();
+        state.save(current);
+
+        int[] travel = getDuration(state.places[current], state.places[neighbor], carPlaceId, state.travel);
+        int durationToNext = travel[0];
+        int returnDurationWalking = travel[1];
+        carPlaceId = travel[2];
+
+        setTravel(state, current, travel);
+        time += durationToNext - returnDurationToCar + returnDurationWalking;
+        state.push(current);
+
+        visit(state, neighbor, time, score + reward, carPlaceId, returnDurationWalking);
+
+        state.pop();
+        state.rollback(mark);
+    }
+
+    /* setLastTravel - Set the travel information of the last place of an itinerary in the search state
+     *                 When driving, the user parks here or walks back after the car
+     *                 The caller must save the place in the undo log before
+     *
+     *  @return                 : void
+     *  @state                  : the search state
+     *  @current                : local index of the last place
+     *  @carPlaceId             : id of the place where is the car parked
+     */
+    private void setLastTravel(SearchState state, int current, int carPlaceId) {
+        Place currentPlace = state.places[current];
+
+        state.durationsToNext[current] = 0;
+        state.distancesToNext[current] = 0;
+        state.travelModes[current] = Enums.TravelMode.UNKNOWN;
+        state.parkHeres[current] = false;
+        state.getCarBacks[current] = false;
+        state.carPlaceIds[current] = -1;
+
+        if (travelMode == Enums.TravelMode.DRIVING) {
+            if (carPlaceId == currentPlace.id) {
+                state.parkHeres[current] = true;
+            } else {
+                state.getCarBacks[current] = true;
+                state.travelModes[current] = Enums.TravelMode.WALKING;
+                state.carPlaceIds[current] = carPlaceId;
+                state.durationsToNext[current] = matrix.getDuration(Enums.TravelMode.WALKING, currentPlace.id,
+                                                                    carPlaceId);
+                state.distancesToNext[current] = matrix.getDistance(Enums.TravelMode.WALKING, currentPlace.id,
+                                                                    carPlaceId);
+            }
+        }
+    }
+
+    /* triggerSolution - Same as above, but changes the search state in place instead of copying it
+     *
+     *  @return                 : void
+     *  @state                  : the search state of the current task
+     *  @current                : local index of the current place
+     *  @score                  : current score
+     *  @time                   : time at the current place (seconds from the start of the planning day)
+     *  @carPlaceId             : id of the place where is the car parked (if applicable)
+     *  @returnDurationToCar    : duration to walk after the car
+     */
+    private void triggerSolution(SearchState state, int current, double score, int time, int carPlaceId,
+                                 int returnDurationToCar) {
+        Place currentPlace = state.places[current];
+        int next = state.fixed.next(0);
+
+        state.save(current);
+        state.push(current);
+
+        if (next < 0) {
+            // this is the last place of the itinerary
+            setLastTravel(state, current, carPlaceId);
+
+            // A hack to trigger the solution checking
+            visit(state, current, time, score, carPlaceId, returnDurationToCar);
+        } else {
+            state.fixed.remove(next);
+
+            int[] travel = getDuration(currentPlace, state.places[next], carPlaceId, state.travel);
+            int durationToNext = travel[0];
+            int returnDurationWalking = travel[1];
+            int nextCarPlaceId = travel[2];
+
+            setTravel(state, current, travel);
+            time += durationToNext - returnDurationToCar + returnDurationWalking;
+
+            visit(state, next, time, score, nextCarPlaceId, returnDurationWalking);
+            state.fixed.add(next);
+        }
+
+        state.pop();
+    }
+
+    /* visit - Same as above, but changes the search state in place and rolls it back before returning
+     *         The time is kept as seconds from the start of the planning day
+     *
+     *  @return                 : void
+     *  @state                  : the search state of the current task
+     *  @current                : local index of the current place
+     *  @time                   : the current time (seconds from the start of the planning day)
+     *  @score                  : current score
+     *  @carPlaceId             : the id of the place where is the car parked
+     *  @returnDurationToCar    : duration to walk after the car
+     */
+    void visit(SearchState state, int current, int time, double score, int carPlaceId, int returnDurationToCar) {
+        int mark = state.mark();
+        state.nodes++;
+
+        try {
+            if (state.stopped || ((state.nodes & (Constants.SEARCH_CHECK_INTERVAL - 1)) == 0 && isTimeUp())) {
+                state.stopped = true;
+                return;
+            }
+
+            if (state.greedy && state.nodes > Constants.WARM_START_MAX_NODES) {
+                return;
+            }
+
+            if (scheduleFixed(state, current, time, score, carPlaceId, returnDurationToCar)) {
+                return;
+            }
+
+            // check if we need to wait some time to plan this place when the user wants
+            int fixedTime = fixedSeconds[current];
+            if (fixedTime != SearchState.NOT_PLANNED && state.plannedTimes[current] == SearchState.NOT_PLANNED) {
+                if (fixedTime > time && canVisit(current, fixedTime)) {
+                    state.save(current);
+                    state.waitTimes[current] = fixedTime - time;
+                    time = fixedTime;
+                }
+            }
+
+            if (isSolution(state, time, current)) {
+                state.solutions++;
+                generateItinerary(score, state, searchMode);
+                return;
+            }
+
+            // predict the score for the current solution
+            double prediction = predictScore(state, current, time);
+            if (score + prediction <= incumbent.get()) {
+                state.prunes[Enums.PruneReason.BOUND.ordinal()]++;
+                return;
+            }
+
+            if (!canVisit(current, time)) {
+                state.prunes[Enums.PruneReason.CLOSED.ordinal()]++;
+                return;
+            }
+
+            // visit the current place
+            boolean removed = state.open.remove(current);
+            state.save(current);
+            state.plannedTimes[current] = time;
+            time += state.places[current].durationVisit;
+
+            if (state.open.isEmpty()) {
+                triggerSolution(state, current, score, time, carPlaceId, returnDurationToCar);
+            } else {
+                int depth = state.routeSize();
+                int size = sortByReward(state, depth, current, time, false);
+                int[] neighbors = state.indices(depth, size);
+
+                if (shouldSplit(depth, size)) {
+                    // each neighbor gets its own copy of the state, idle workers will steal them
+                    List<SubtreeTask> subtrees = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        subtrees.add(new SubtreeTask(new SearchState(state), current, neighbors[i], score, time,
+                                                     carPlaceId, returnDurationToCar, this));
+                    }
+                    ForkJoinTask.invokeAll(subtrees);
+                } else {
+                    for (int i = 0; i < size; i++) {
+                        long solutions = state.solutions;
+                        visitNeighbor(state, current, neighbors[i], score, time, carPlaceId, returnDurationToCar);
+                        // the greedy dive stops at the first itinerary
+                        if (state.stopped || (state.greedy && state.solutions > solutions)) {
+                            break;
+                        }
+                    }
+                }
+            }
+
+            if (removed) {
+                state.open.add(current);
+            }
+        } finally {
+            state.rollback(mark);
+        }
+    }
+
+    /* shouldSplit - Checks if the neighbors of the current place should be explored by separate fork/join tasks
+     *               Only close to the root (where the subtrees are big enough to pay for copying the state)
+     *               and only if the current worker has not already queued more tasks than the others can steal
+     *
+     *  @return                 : true/false
+     *  @depth                  : the number of places in the current solution
+     *  @neighbors              : the number of neighbors
+     */
+    private boolean shouldSplit(int depth, int neighbors) {
+        if (neighbors < 2 || depth > Constants.PLANNER_SPLIT_MAX_DEPTH || !ForkJoinTask.inForkJoinPool()) {
+            return false;
+        }
+
+        return ForkJoinTask.getPool().getParallelism() > 1 &&
+               ForkJoinTask.getSurplusQueuedTaskCount() < Constants.PLANNER_SPLIT_MAX_SURPLUS;
+    }
+
+    /* createTask - Create a task for each place to be visited from the starting point
+     *              Do not call this method from visit method
+     *
+     *  @return                 : void
+     *  @next                   : the place we want to submit
+     *  @open                   : set of unvisited places
+     *  @solution               : the current solution (like an accumulator)
+     *  @fixed                  : a priority queue which contains the fixed places
+     */
+    private PlannerTask createTask(Place next, Set<Place> open, List<Place> solution, PriorityQueue<Place> fixed) {
+        try {
+            if (!next.timeFrame.isNonStop() && next.timeFrame.isClosed(planningDay)) {
+                return null;
+            }
+
+            LocalDateTime userStartHour = timeFrame.getInterval(planningDay).getStart();
+            LocalDateTime currentTime = null;
+            int durationToNext = getDurationFromStart(next);
+
+            start.plannedHour = userStartHour;
+            userStartHour = userStartHour.plusSeconds(durationToNext);
+            start.durationToNext = durationToNext;
+            start.distanceToNext = getDistanceFromStart(next);
+            start.travelMode = travelMode;
+
+            // place can be visited immediately
+            if (next.canVisit(userStartHour)) {
+                currentTime = userStartHour;
+            } else {
+                LocalDateTime placeOpeningHour = next.timeFrame.getInterval(planningDay).getStart();
+                if (timeFrame.canVisit(placeOpeningHour)) {
+                    // start as soon as the place opens
+                    currentTime = placeOpeningHour;
+                }
+            }
+
+            if (currentTime != null) {
+                // each task gets its own start place because the start place is changed while planning
+                if (searchMode == Enums.SearchMode.IN_PLACE) {
+                    SearchState state = createState(open, fixed, start.copy());
+                    state.first = localIndexes.get(next.id);
+                    int time = toSeconds(currentTime);
+                    return new PlannerTask(localIndexes.get(next.id), state, time, 0.0, next.id, 0, this);
+                }
+                solution.add(start.copy());
+                return new PlannerTask(next, open, solution, currentTime, 0.0, next.id, 0, fixed, this);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /* createState - Create the search state of a task for the in place search
+     *               The solution starts with the given start place
+     *
+     *  @return                 : the search state
+     *  @open                   : set of unvisited places
+     *  @fixed                  : the fixed places
+     *  @startPlace             : the task's own copy of the start place
+     */
+    private SearchState createState(Set<Place> open, PriorityQueue<Place> fixed, Place startPlace) {
+        SearchState state = new SearchState(indexedPlaces, startPlace);
+
+        for (Place place : open) {
+            state.open.add(localIndexes.get(place.id));
+        }
+        for (Place place : fixed) {
+            state.fixed.add(localIndexes.get(place.id));
+        }
+
+        state.plannedTimes[state.start] = toSeconds(startPlace.plannedHour);
+        state.durationsToNext[state.start] = startPlace.durationToNext;
+        state.distancesToNext[state.start] = startPlace.distanceToNext;
+        state.travelModes[state.start] = startPlace.travelMode;
+        state.push(state.start);
+
+        return state;
+    }
+
+    /* createState - Create the search state after the start place and the given first place, the other places
+     *               are open or fixed (used by the benchmarks, after init)
+     *
+     *  @return                 : the search state, the time of the first place is in plannedTimes
+     *  @first                  : local index of the first place
+     */
+    SearchState createState(int first) {
+        SearchState state = new SearchState(indexedPlaces, start.copy());
+        state.first = first;
+
+        for (int i = 0; i < indexedPlaces.length; i++) {
+            if (i == first) {
+                continue;
+            }
+            if (indexedPlaces[i].fixedAt.equals("anytime")) {
+                state.open.add(i);
+            } else {
+                state.fixed.add(i);
+            }
+        }
+
+        state.plannedTimes[state.start] = userStart;
+        state.push(state.start);
+        state.plannedTimes[first] = nextOpening(first, userStart);
+        state.push(first);
+
+        return state;
+    }
+
+    /* nextOpening - Get the first time (from the given one) when the place with the given local index can be visited
+     *               The exact search waits at a place which is not open yet
+     *
+     *  @return                 : the time or NOT_PLANNED if the place does not open anymore in that day
+     *  @index                  : local index of the place
+     *  @time                   : seconds from the start of the planning day
+     */
+    private int nextOpening(int index, int time) {
+        if (canVisit(index, time)) {
+            return time;
+        }
+
+        int day = time / Constants.SECONDS_PER_DAY;
+        int second = time - day * Constants.SECONDS_PER_DAY;
+        int dayOfWeek = (planningDay - 1 + day) % 7 + 1;
+        int position = (index * 8 + dayOfWeek) * 2;
+
+        // the opening hour itself is not included (see isOpen)
+        if (second <= openingSeconds[position] && openingSeconds[position] + 1 < openingSeconds[position + 1]) {
+            return day * Constants.SECONDS_PER_DAY + openingSeconds[position] + 1;
+        }
+        return SearchState.NOT_PLANNED;
+    }
+
+    /* startVisit - Get when the exact search starts visiting a place, waiting for its fixed time or for it to open
+     *              Like in the tree search, a place can not be visited if the next fixed place would be late after
+     *              it (the tree search schedules the fixed place instead)
+     *
+     *  @return                 : the start of the visit or NOT_PLANNED if the place can not be visited
+     *  @index                  : local index of the place
+     *  @time                   : the time of arriving at the place
+     *  @nextFixed              : local index of the next fixed place to schedule after this one (-1 if none)
+     *  @carPlaceId             : id of the place where is the car parked after arriving
+     *  @returnDurationToCar    : duration to walk after the car after arriving
+     *  @travel                 : buffer for the travel information
+     */
+    private int startVisit(int index, int time, int nextFixed, int carPlaceId, int returnDurationToCar,
+                           int[] travel) {
+        int fixedTime = fixedSeconds[index];
+        if (fixedTime != SearchState.NOT_PLANNED && fixedTime > time && canVisit(index, fixedTime)) {
+            time = fixedTime;
+        } else {
+            time = nextOpening(index, time);
+        }
+
+        if (time == SearchState.NOT_PLANNED || isTourOver(time, index)) {
+            return SearchState.NOT_PLANNED;
+        }
+
+        if (fixedTime == SearchState.NOT_PLANNED && nextFixed >= 0) {
+            Place place = indexedPlaces[index];
+            getDuration(place, indexedPlaces[nextFixed], carPlaceId, travel);
+            if (time + place.durationVisit + travel[0] - returnDurationToCar + travel[1] >= fixedSeconds[nextFixed]) {
+                return SearchState.NOT_PLANNED;
+            }
+        }
+
+        return time;
+    }
+
+    /* searchLabels - Find the best itinerary by dynamic programming over the visited places (the exact search)
+     *                The partial itineraries (labels) are extended one place at a time and for each state (visited
+     *                places, last place, where the car is parked) only the ones which are not dominated are kept
+     *                (see DominanceTable), so the orders reaching the same state later with a lower score are dropped
+     *                Unlike the tree search, the user waits at a place which is not open yet, that is why an earlier
+     *                label can continue like any later one and the dominance never drops the best itinerary
+     *                The rewards are the same as in the tree search (going to a fixed place is not rewarded, leaving
+     *                it at its fixed time adds the bonus), the fixed places are visited in order of their fixed time
+     *                but some can be skipped and the labels are pruned with the admissible bound
+     *                With a limited width only the best labels of each layer are extended (the beam search), which
+     *                is not exact anymore, but needs at most width * places^2 steps for any request
+     *
+     *  @return                 : the best score found (the other searches may have found a better one)
+     *  @width                  : the maximum number of labels extended for each number of places
+     */
+    double searchLabels(int width) {
+        int n = indexedPlaces.length;
+        long fixedMask = 0;
+        long allMask = n == Long.SIZE ? -1L : (1L << n) - 1;
+        int[] travel = new int[TRAVEL_INFO_SIZE];
+        int[] buffer = new int[TRAVEL_INFO_SIZE];
+        PlaceMask open = new PlaceMask(n);
+        PlaceMask fixed = new PlaceMask(n);
+        DominanceTable table = new DominanceTable();
+        long prunes = 0;
+        long closed = 0;
+        // the best labels, different from each other like the itineraries of the plan
+        TopLabels topLabels = new TopLabels(table, alternatives, minDistance);
+        double best = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < n; i++) {
+            if (fixedSeconds[i] != SearchState.NOT_PLANNED) {
+                fixedMask |= 1L << i;
+            }
+        }
+
+        // the itinerary can start with any place, the fixed places before the first one are skipped
+        int userStart = toSeconds(timeFrame.getInterval(planningDay).getStart());
+        for (int i = 0; i < n; i++) {
+            long mask = 1L << i;
+            if ((fixedMask & mask) != 0) {
+                mask |= fixedMask & (mask - 1);
+            }
+
+            int arrival = userStart + getDurationFromStart(indexedPlaces[i]);
+            int nextFixed = nextFixed(fixedMask, mask);
+            int time = startVisit(i, arrival, nextFixed, indexedPlaces[i].id, 0, buffer);
+            if (time != SearchState.NOT_PLANNED) {
+                table.add(mask, i, i, time, time - arrival, 0, 0.0, 0.0, -1, fixedBonuses[i]);
+            }
+        }
+
+        for (int[] layer = table.nextLayer(width); layer.length > 0; layer = table.nextLayer(width)) {
+            for (int label : layer) {
+                int current = table.getLast(label);
+                int car = table.getCar(label);
+                long mask = table.getMask(label);
+                int time = table.getTime(label);
+                double score = table.getScore(label);
+
+                // any label is an itinerary (the rewards are not negative, so the longer ones are preferred)
+                topLabels.add(label);
+                best = Math.max(best, score);
+
+                if (isTimeUp()) {
+                    continue;
+                }
+
+                // the itineraries found by the other searches of the portfolio are bounds as well
+                open.assign(allMask & ~mask & ~fixedMask);
+                fixed.assign(fixedMask & ~mask);
+                if (score + upperBound(open, fixed, current, time) <= Math.max(topLabels.getThreshold(),
+                                                                               incumbent.get())) {
+                    prunes++;
+                    continue;
+                }
+
+                Place currentPlace = indexedPlaces[current];
+                int departure = time + currentPlace.durationVisit;
+
+                for (int next = 0; next < n; next++) {
+                    long nextMask = mask | 1L << next;
+                    boolean isFixed = (fixedMask & 1L << next) != 0;
+                    if (nextMask == mask) {
+                        continue;
+                    }
+                    if (isFixed) {
+                        // the fixed places before it are skipped, like the tree search does when one would be late
+                        nextMask |= fixedMask & ((1L << next) - 1);
+                    }
+
+                    getDuration(currentPlace, indexedPlaces[next], indexedPlaces[car].id, travel);
+                    int returnDurationWalking = travel[1];
+                    int nextCarPlaceId = travel[2];
+                    int nextCar = nextCarPlaceId == indexedPlaces[next].id ? next : car;
+                    int arrival = departure + travel[0] - table.getReturn(label) + returnDurationWalking;
+
+                    int start = startVisit(next, arrival, nextFixed(fixedMask, nextMask), nextCarPlaceId,
+                                           returnDurationWalking, buffer);
+                    if (start == SearchState.NOT_PLANNED) {
+                        closed++;
+                        continue;
+                    }
+
+                    double reward = isFixed ? 0 : getReward(current, next, departure);
+                    double priority = score + reward;
+                    if (width != Integer.MAX_VALUE) {
+                        // the beam keeps the labels which can still collect the most
+                        open.assign(allMask & ~nextMask & ~fixedMask);
+                        fixed.assign(fixedMask & ~nextMask);
+                        priority += upperBound(open, fixed, next, start);
+                    }
+                    table.add(nextMask, next, nextCar, start, start - arrival, returnDurationWalking, score + reward,
+                              priority, label, fixedBonuses[next]);
+                }
+            }
+        }
+
+        addNodes(table.size());
+        prunesCount[Enums.PruneReason.BOUND.ordinal()].add(prunes);
+        prunesCount[Enums.PruneReason.CLOSED.ordinal()].add(closed);
+        prunesCount[Enums.PruneReason.DOMINATED.ordinal()].add(table.getDominatedCount());
+        prunesCount[Enums.PruneReason.BEAM.ordinal()].add(table.getCutCount());
+        if (profile) {
+            for (int label = 0; label < table.size(); label++) {
+                firstPlacesNodes.incrementAndGet(table.getFirst(label));
+            }
+        }
+
+        // publish the itineraries in ascending order of their scores, so each of them improves the best score
+        Enums.SearchMode foundBy = width == Integer.MAX_VALUE ? Enums.SearchMode.EXACT : Enums.SearchMode.BEAM;
+        for (int label : topLabels.getLabels()) {
+            generateItinerary(table.getScore(label), createState(table, label), foundBy);
+        }
+        return best;
+    }
+
+    /* nextFixed - Get the next fixed place to schedule (the fixed places have the first local indexes, sorted by
+     *             their fixed time)
+     *
+     *  @return                 : local index of the place or -1 if all the fixed places are visited
+     *  @fixedMask              : the fixed places
+     *  @mask                   : the visited places
+     */
+    private static int nextFixed(long fixedMask, long mask) {
+        long remaining = fixedMask & ~mask;
+        return remaining == 0 ? -1 : Long.numberOfTrailingZeros(remaining);
+    }
+
+    /* createState - Create the search state of the itinerary ending with the given label of the exact search
+     *               so the itinerary is created like the ones found by the in place search
+     *
+     *  @return                 : the search state
+     *  @table                  : the labels of the exact search
+     *  @label                  : the last label of the itinerary
+     */
+    private SearchState createState(DominanceTable table, int label) {
+        int length = 0;
+        for (int l = label; l >= 0; l = table.getParent(l)) {
+            length++;
+        }
+
+        int[] places = new int[length];
+        int[] times = new int[length];
+        int[] waits = new int[length];
+        int[] cars = new int[length];
+        for (int i = length - 1, l = label; i >= 0; i--, l = table.getParent(l)) {
+            places[i] = table.getLast(l);
+            times[i] = table.getTime(l);
+            waits[i] = table.getWait(l);
+            cars[i] = table.getCar(l);
+        }
+
+        return createState(places, times, waits, cars, length);
+    }
+
+    /* createState - Create the search state of an itinerary scheduled by the exact or the neighborhood search
+     *
+     *  @return                 : the search state
+     *  @places                 : local indexes of the places in the order of the visits
+     *  @times                  : the start of each visit
+     *  @waits                  : the time waited before each visit
+     *  @cars                   : local index of the place where the car is parked after each visit
+     *  @length                 : the number of places
+     */
+    private SearchState createState(int[] places, int[] times, int[] waits, int[] cars, int length) {
+        Place first = indexedPlaces[places[0]];
+        Place startPlace = start.copy();
+        startPlace.plannedHour = timeFrame.getInterval(planningDay).getStart();
+        startPlace.durationToNext = getDurationFromStart(first);
+        startPlace.distanceToNext = getDistanceFromStart(first);
+        startPlace.travelMode = travelMode;
+
+        SearchState state = createState(Collections.emptySet(), new PriorityQueue<>(), startPlace);
+        for (int i = 0; i < length; i++) {
+            int index = places[i];
+            int carPlaceId = indexedPlaces[cars[i]].id;
+
+            state.push(index);
+            state.plannedTimes[index] = times[i];
+            state.waitTimes[index] = waits[i];
+            if (i + 1 < length) {
+                Place next = indexedPlaces[places[i + 1]];
+                setTravel(state, index, getDuration(indexedPlaces[index], next, carPlaceId, state.travel));
+            } else {
+                setLastTravel(state, index, carPlaceId);
+            }
+        }
+
+        return state;
+    }
+
+    /* evaluateRoute - Schedule the places of a route like the exact search extends its labels and compute its score
+     *                 The places which can not be visited at their position (closed, the tour is over, the next
+     *                 fixed place would be late or a fixed place is out of the order of the fixed times) are dropped
+     *                 from the route, so any order of the places is an itinerary
+     *
+     *  @return                 : void
+     *  @route                  : the route (the places, the schedule and the score are changed)
+     */
+    void evaluateRoute(Route route) {
+        int n = indexedPlaces.length;
+        int size = 0;
+        double score = 0;
+        // the last fixed place visited (the fixed places have the first local indexes, sorted by their fixed time)
+        int lastFixed = -1;
+        int last = -1;
+        int car = -1;
+        int returnDuration = 0;
+        int departure = 0;
+
+        for (int i = 0; i < route.size; i++) {
+            int next = route.places[i];
+            boolean isFixed = fixedSeconds[next] != SearchState.NOT_PLANNED;
+            if (isFixed && next <= lastFixed) {
+                continue;
+            }
+
+            // the fixed places before this one are skipped
+            int nextLastFixed = isFixed ? next : lastFixed;
+            int nextFixed = nextLastFixed + 1 < n && fixedSeconds[nextLastFixed + 1] != SearchState.NOT_PLANNED
+                            ? nextLastFixed + 1 : -1;
+            int arrival;
+            int nextCar;
+            int nextCarPlaceId;
+            int returnDurationWalking;
+
+            if (size == 0) {
+                arrival = userStart + getDurationFromStart(indexedPlaces[next]);
+                nextCar = next;
+                nextCarPlaceId = indexedPlaces[next].id;
+                returnDurationWalking = 0;
+            } else {
+                getDuration(indexedPlaces[last], indexedPlaces[next], indexedPlaces[car].id, route.travel);
+                returnDurationWalking = route.travel[1];
+                nextCarPlaceId = route.travel[2];
+                nextCar = nextCarPlaceId == indexedPlaces[next].id ? next : car;
+                arrival = departure + route.travel[0] - returnDuration + returnDurationWalking;
+            }
+
+            int start = startVisit(next, arrival, nextFixed, nextCarPlaceId, returnDurationWalking, route.buffer);
+            if (start == SearchState.NOT_PLANNED) {
+                continue;
+            }
+
+            if (size > 0 && !isFixed) {
+                score += getReward(last, next, departure);
+            }
+            route.places[size] = next;
+            route.times[size] = start;
+            route.waits[size] = start - arrival;
+            route.cars[size] = nextCar;
+            size++;
+
+            last = next;
+            car = nextCar;
+            returnDuration = returnDurationWalking;
+            departure = start + indexedPlaces[next].durationVisit;
+            lastFixed = nextLastFixed;
+        }
+
+        route.size = size;
+        route.score = size == 0 ? Double.NEGATIVE_INFINITY : score;
+    }
+
+    /* improve - Improve the itineraries with the neighborhood search, each of them for an equal part of the time
+     *           The itineraries may come from any search mode, they are scheduled and scored again like the exact
+     *           search does (see evaluateRoute), so the scores of the tree search are not comparable with these
+     *           If none of them is improved, they are returned as they are, otherwise each one is replaced by its
+     *           improvement and all of them are ranked by the scores of evaluateRoute (a one not improved keeps its
+     *           own schedule)
+     *           The improved ones are kept apart from the top itineraries and never raise the score the searches
+     *           prune against, the best itinerary is given to the itinerary listener if the search improved it
+     *           Must be called after getPlan for the same places
+     *
+     *  @return                 : the itineraries sorted descending by their score (different from each other like the
+     *                            top itineraries)
+     *  @itineraries            : the itineraries (the first place of each one is the start place)
+     *  @timeBudget             : how long to improve them (milliseconds)
+     */
+    List<List<Place>> improve(List<List<Place>> itineraries, long timeBudget) {
+        int n = indexedPlaces.length;
+        long end = Math.min(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudget), requestDeadline);
+        NeighborhoodSearch search = new NeighborhoodSearch(this, n, Constants.NEIGHBORHOOD_SEARCH_SEED);
+        TopItineraries ranked = new TopItineraries(alternatives, minDistance);
+        Set<List<Place>> improvedItineraries = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (int i = 0; i < itineraries.size(); i++) {
+            Route route = new Route(n);
+            for (Place place : itineraries.get(i).subList(1, itineraries.get(i).size())) {
+                Integer index = localIndexes.get(place.id);
+                if (index != null && !route.contains(index)) {
+                    route.places[route.size++] = index;
+                }
+            }
+            evaluateRoute(route);
+
+            long now = System.nanoTime();
+            Route improved = search.improve(route, now + (end - now) / (itineraries.size() - i));
+            if (improved.score > route.score) {
+                SearchState state = createState(improved.places, improved.times, improved.waits, improved.cars,
+                                                improved.size);
+                List<Place> itinerary = createItinerary(state);
+                improvedItineraries.add(itinerary);
+                ranked.add(improved.score, itinerary);
+            } else {
+                ranked.add(route.score, itineraries.get(i));
+            }
+        }
+        addNodes(search.getEvaluations());
+
+        if (improvedItineraries.isEmpty()) {
+            return itineraries;
+        }
+
+        List<List<Place>> rankedList = ranked.getItineraries();
+        if (improvedItineraries.contains(rankedList.get(0))) {
+            synchronized (incumbent) {
+                winner = Enums.SearchMode.NEIGHBORHOOD;
+            }
+            if (itineraryListener != null) {
+                itineraryListener.accept(rankedList.get(0));
+            }
+        }
+        return rankedList;
+    }
+
+    /* publishRoute - Create the itinerary of a route and publish it if it improves the best score
+     *
+     *  @return                 : the itinerary
+     *  @route                  : the route (scheduled by evaluateRoute)
+     *  @foundBy                : the search which found the route
+     */
+    private List<Place> publishRoute(Route route, Enums.SearchMode foundBy) {
+        SearchState state = createState(route.places, route.times, route.waits, route.cars, route.size);
+        List<Place> itinerary = createItinerary(state);
+        if (route.score > incumbent.get()) {
+            saveItinerary(route.score, itinerary, foundBy);
+        }
+        return itinerary;
+    }
+
+    /* searchGreedy - Build a greedy itinerary starting with each place (see NeighborhoodSearch.construct)
+     *                The itineraries are published in ascending order of their scores, like the exact search does
+     *
+     *  @return                 : the best itinerary or null if no place can be visited
+     */
+    Route searchGreedy() {
+        int n = indexedPlaces.length;
+        NeighborhoodSearch search = new NeighborhoodSearch(this, n, Constants.NEIGHBORHOOD_SEARCH_SEED);
+        List<Route> routes = new ArrayList<>();
+
+        for (int first = 0; first < n; first++) {
+            Route route = search.construct(first);
+            if (route.size > 0) {
+                routes.add(route);
+            }
+        }
+        addNodes(search.getEvaluations());
+
+        routes.sort((r1, r2) -> Double.compare(r1.score, r2.score));
+        for (Route route : routes) {
+            publishRoute(route, Enums.SearchMode.GREEDY);
+        }
+        return routes.isEmpty() ? null : routes.get(routes.size() - 1);
+    }
+
+    /* searchNeighborhood - Improve an itinerary with the neighborhood search until the time limit is up,
+     *                      publishing each improvement as soon as it is found
+     *
+     *  @return                 : the best score found
+     *  @route                  : the itinerary to start from (the best greedy one)
+     */
+    double searchNeighborhood(Route route) {
+        NeighborhoodSearch search = new NeighborhoodSearch(this, indexedPlaces.length,
+                                                           Constants.NEIGHBORHOOD_SEARCH_SEED);
+        search.setListener(improved -> publishRoute(improved, Enums.SearchMode.NEIGHBORHOOD));
+
+        Route best = search.improve(route, searchEnd);
+        addNodes(search.getEvaluations());
+        return best.score;
+    }
+
+    /* isTimeUp - Checks if the time limit of the search is up or the search was stopped
+     *
+     *  @return                 : true/false
+     */
+    boolean isTimeUp() {
+        return System.nanoTime() > deadline;
+    }
+
+    /* isStopped - Checks if the search was stopped before the end given by its time limit (see stopSearch)
+     *
+     *  @return                 : true/false
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /* stopSearch - Stop the searches which are still running (they return the best itineraries found so far)
+     *              This is the cancellation of the planner: every search checks isTimeUp at bounded intervals
+     *              (the in place search every SEARCH_CHECK_INTERVAL nodes, the others at each node, label or move)
+     *
+     *              The time limit of the tree search stops its tasks too, but only a stop before it also skips the
+     *              improvement of the itineraries, which has its own end (see improve)
+     *
+     *  @return                 : void
+     */
+    void stopSearch() {
+        long now = System.nanoTime();
+        if (now < searchEnd) {
+            stopped = true;
+        }
+        deadline = now;
+    }
+
+    /* measure - Run a part of the search and add the CPU time it used on the current thread to the planner
+     *           When the current thread is already measured (a task run inline by another one) it is not measured
+     *           again, so the CPU time of a thread helping another request while it waits is counted there
+     *
+     *  @return                 : the result of the search
+     *  @search                 : the part of the search
+     */
+    <T> T measure(Supplier<T> search) {
+        if (MEASURING.get()) {
+            return search.get();
+        }
+
+        MEASURING.set(true);
+        long start = THREADS.getCurrentThreadCpuTime();
+        try {
+            return search.get();
+        } finally {
+            cpuTime.add(THREADS.getCurrentThreadCpuTime() - start);
+            MEASURING.set(false);
+        }
+    }
+
+    /* getCpuTime - Get the CPU time used by the request so far (by all the threads)
+     *
+     *  @return                 : the time (nanoseconds)
+     */
+    long getCpuTime() {
+        return cpuTime.sum();
+    }
+
+    /* find - Find the instance of a place in a set of places
+     *
+     *  @return                 : the instance from the set or null if there is no such place
+     *  @places                 : set of places
+     *  @place                  : the place to search
+     */
+    private Place find(Set<Place> places, Place place) {
+        for (Place p : places) {
+            if (p.id == place.id) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /* initMatrix - Get references for distance and duration matrix (from the city instance)
+     *
+     *  @return                 : void
+     */
+    private void initMatrix() {
+        matrix = city.getMatrix();
+    }
+
+    /* getBestRestaurant - Returns the best restaurant for a specific meal
+     *
+     *  @return                 : best restaurant
+     *  @placesIds              : places already chosen
+     *  @type                   : meal type
+     */
+    private Place getBestRestaurant(Set<Integer> placesIds, Enums.MealType type) {
+        LocalDateTime time;
+        String timeAsString;
+        List<Place> topRestaurants;
+        Place bestRestaurant = null;
+
+        switch (type) {
+            case DINNER:
+                timeAsString = Constants.DEFAULT_DINNER_HOUR;
+                break;
+            case LUNCH:
+                timeAsString = Constants.DEFAULT_LUNCH_HOUR;
+                break;
+            case BREAKFAST:
+                timeAsString = Constants.DEFAULT_BREAKFAST_HOUR;
+                break;
+            default:
+                return null;
+        }
+
+        time = Interval.getDateTime(timeAsString, planningDay);
+        topRestaurants = city.getTopRestaurants(5, time);
+
+        if (topRestaurants != null && !topRestaurants.isEmpty()) {
+            for (Place restaurant : topRestaurants) {
+                if (!placesIds.contains(restaurant.id)) {
+                    // the planners of the days of a request can choose the same restaurant at the same time
+                    bestRestaurant = restaurant.copy();
+                    bestRestaurant.fixedAt = timeAsString;
+                    bestRestaurant.fixedTime = time;
+                    bestRestaurant.mealType = type;
+                    break;
+                }
+            }
+        }
+
+        return bestRestaurant;
+    }
+
+    /* initRestaurants - Check if need to include meals and get the best restaurants and fix them accordingly
+     *
+     *  @return                 : void
+     *  @places                 : restaurants will be added to the list of places which will be used by the planner
+     */
+    private void initRestaurants(List<Place> places) {
+        if (!breakfast && !lunch && !dinner) {
+            return;
+        }
+
+        boolean[] mealsIncluded = new boolean[]{dinner, lunch, breakfast};
+        Enums.MealType[] meals = new Enums.MealType[]{Enums.MealType.DINNER, Enums.MealType.LUNCH, Enums.MealType.BREAKFAST};
+        Set<Integer> placesIds = new HashSet<>();
+        Place bestRestaurant;
+        for (Place place : places) {
+            placesIds.add(place.id);
+        }
+
+        for (int i = 0; i < mealsIncluded.length; i++) {
+            if (mealsIncluded[i]) {
+                bestRestaurant = getBestRestaurant(placesIds, meals[i]);
+                if (bestRestaurant == null) {
+                    continue;
+                }
+                places.add(bestRestaurant);
+                placesIds.add(bestRestaurant.id);
+            }
+        }
+    }
+
+    /* initFixedTime - Transform fixed time from string to LocalDateTime to avoid duplicate work
+     *
+     *  @return                 : void
+     *  @places                 : places to be visited
+     */
+    private void initFixedTime(List<Place> places) {
+        for (Place place : places) {
+            if (!place.fixedAt.equals("anytime")) {
+                place.fixedTime = Interval.getDateTime(place.fixedAt, planningDay);
+            }
+        }
+    }
+
+    /* initLocalIndexes - Map the places of the request to dense local indexes used by the in place search
+     *                    The fixed places come first, sorted by their fixed time
+     *
+     *  @return                 : void
+     *  @places                 : places to be visited
+     */
+    private void initLocalIndexes(List<Place> places) {
+        List<Place> sorted = new ArrayList<>(places);
+        sorted.sort(Place::compareTo);
+
+        int size = sorted.size();
+        int maxId = -1;
+        for (Place place : sorted) {
+            maxId = Math.max(maxId, place.id);
+        }
+
+        localIndexes = new HashMap<>();
+        localIndexById = new int[maxId + 1];
+        Arrays.fill(localIndexById, -1);
+        indexedPlaces = new Place[size];
+        alwaysVisitable = new PlaceMask(size);
+        boundMasks = ThreadLocal.withInitial(() -> new PlaceMask[] {new PlaceMask(size), new PlaceMask(size)});
+
+        for (int i = 0; i < size; i++) {
+            Place place = sorted.get(i);
+            localIndexes.put(place.id, i);
+            localIndexById[place.id] = i;
+            indexedPlaces[i] = place;
+
+            if (!place.visitInside || place.isNonStop()) {
+                alwaysVisitable.add(i);
+            }
+        }
+    }
+
+    /* initTimeline - Convert the opening hours and the fixed times to seconds from the midnight of the planning day
+     *                This is done once per request, so the search does not need LocalDateTime arithmetic
+     *
+     *  @return                 : void
+     */
+    private void initTimeline() {
+        int n = indexedPlaces.length;
+        planningDayStart = timeFrame.getInterval(planningDay).getStart().toLocalDate().atStartOfDay();
+        openingSeconds = new int[(n + 1) * 16];
+        fixedSeconds = new int[n];
+
+        for (int i = 0; i <= n; i++) {
+            // the opening hours are not needed for the places which can be visited at any time
+            if (i < n && alwaysVisitable.contains(i)) {
+                continue;
+            }
+
+            TimeFrame opening = i < n ? indexedPlaces[i].timeFrame : timeFrame;
+            for (int dayOfWeek = 1; dayOfWeek <= 7; dayOfWeek++) {
+                int[] seconds = opening.getOpeningSeconds(dayOfWeek);
+                openingSeconds[(i * 8 + dayOfWeek) * 2] = seconds[0];
+                openingSeconds[(i * 8 + dayOfWeek) * 2 + 1] = seconds[1];
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            Place place = indexedPlaces[i];
+            fixedSeconds[i] = place.fixedAt.equals("anytime") ? SearchState.NOT_PLANNED : toSeconds(place.fixedTime);
+        }
+    }
+
+    /* toSeconds - Convert a time to seconds from the midnight of the planning day
+     *
+     *  @return                 : the number of seconds
+     *  @time                   : the time
+     */
+    private int toSeconds(LocalDateTime time) {
+        return Interval.getSeconds(time, planningDay);
+    }
+
+    /* toDateTime - Convert seconds from the midnight of the planning day back to a time
+     *              Used only when an itinerary is created
+     *
+     *  @return                 : the time
+     *  @seconds                : the number of seconds
+     */
+    private LocalDateTime toDateTime(int seconds) {
+        return planningDayStart.plusSeconds(seconds);
+    }
+
+    /* init - Initialize the planner only when the getPlan method is called
+     *        The benchmarks call it directly to measure the parts of the search without searching
+     *
+     *  @return                 : void
+     *  @places                 : places to be visited
+     */
+    void init(List<Place> places) {
+        long initStart = System.nanoTime();
+        if (planningDay == 0) {
+            planningDay = timeFrame.getOpenDays().get(0);
+        }
+        initMatrix();
+        initRestaurants(places);
+        initFixedTime(places);
+        initLocalIndexes(places);
+        firstPlacesNodes = new AtomicLongArray(indexedPlaces.length);
+        initTimeline();
+        long rewardsStart = System.nanoTime();
+        generateRewards();
+        rewardsTime = System.nanoTime() - rewardsStart;
+        initBounds();
+        topItineraries = new TopItineraries(alternatives, minDistance);
+        startTimeMeasure = System.nanoTime();
+        initTime = startTimeMeasure - initStart;
+    }
+
+    /* getPlan - Generate possible itineraries
+     *           The CPU time used by all the threads of the search is measured (see getCpuTime)
+     *
+     *  @return                 : possible itineraries
+     *  @places                 : a list of places the user wants to visit
+     */
+    List<List<Place>> getPlan(List<Place> places) {
+        List<List<Place>> itineraries = measure(() -> search(places));
+        searchTime = System.nanoTime() - startTimeMeasure;
+        SearchMetrics.record(this, city.getName(), places.size());
+        return itineraries;
+    }
+
+    /* search - Generate possible itineraries, see getPlan
+     *
+     *  @return                 : possible itineraries
+     *  @places                 : a list of places the user wants to visit
+     */
+    private List<List<Place>> search(List<Place> places) {
+        init(places);
+        stopped = false;
+        long searchTime = getSearchTime();
+        searchShortfall = Math.max(1, timeLimit - improvementTime) - searchTime;
+        searchEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchTime);
+        deadline = searchEnd;
+
+        if (searchMode == Enums.SearchMode.GREEDY || searchMode == Enums.SearchMode.NEIGHBORHOOD) {
+            Route route = searchGreedy();
+            if (route != null && searchMode == Enums.SearchMode.NEIGHBORHOOD) {
+                searchNeighborhood(route);
+            }
+
+            LOGGER.log(Level.FINE, "Finished {0} planning for the city ({1}). Number of solutions found: {2}",
+                       new Object[]{searchMode, city.getName(), solutionsCount.get()});
+            return endSearch();
+        }
+
+        if (searchMode == Enums.SearchMode.PORTFOLIO) {
+            new Portfolio(this, ThreadManager.getPortfolioExecutor(), beamWidth).run(indexedPlaces.length);
+
+            LOGGER.log(Level.FINE, "Finished {0} planning for the city ({1}), the best itinerary was found by {2}. " +
+                       "Number of solutions found: {3}", new Object[]{searchMode, city.getName(), winner,
+                                                                      solutionsCount.get()});
+            return endSearch();
+        }
+
+        if (searchMode == Enums.SearchMode.EXACT || searchMode == Enums.SearchMode.BEAM) {
+            if (indexedPlaces.length <= DominanceTable.MAX_PLACES) {
+                searchLabels(searchMode == Enums.SearchMode.EXACT ? Integer.MAX_VALUE : beamWidth);
+
+                LOGGER.log(Level.FINE, "Finished {0} planning for the city ({1}). Number of solutions found: {2}, " +
+                           "labels: {3}", new Object[]{searchMode, city.getName(), solutionsCount.get(),
+                                                       nodesCount.sum()});
+                return improve(endSearch());
+            }
+            // too many places for the visited places bitmask
+            searchMode = Enums.SearchMode.IN_PLACE;
+        }
+
+        Set<Place> open = new HashSet<>();
+        List<PlannerTask> plannerTasks = new ArrayList<>();
+        PriorityQueue<Place> fixed = new PriorityQueue<>(Comparator.comparing(p -> p.fixedTime));
+
+        for (Place place : places) {
+            if (!place.fixedAt.equals("anytime")) {
+                fixed.add(place);
+            } else {
+                open.add(place);
+            }
+        }
+
+        // only fixed places
+        if (open.isEmpty() && !fixed.isEmpty()) {
+            PlannerTask task = createTask(fixed.poll(), open, new ArrayList<>(), fixed);
+            if (task != null) {
+                plannerTasks.add(task);
+            }
+        }
+        else {
+            // sort descending by rating and by the remaining time for visiting
+            places.sort((p1, p2) -> {
+                if (p2.rating != p1.rating) {
+                    return Double.compare(p2.rating, p1.rating);
+                }
+
+                if (p1.isNonStop() && p2.isNonStop()) {
+                    return 0;
+                } else if (p1.isNonStop()) {
+                    return 1;
+                } else if (p2.isNonStop()) {
+                    return -1;
+                }
+
+                return Interval.compareIntervals(p2.timeFrame.getInterval(planningDay),
+                                                 p1.timeFrame.getInterval(planningDay));
+            });
+
+            for (Place place : places) {
+                if (!open.contains(place)) {
+                    continue;
+                }
+                PlannerTask task;
+                if (searchMode == Enums.SearchMode.IN_PLACE) {
+                    // the in place search never changes the places, so the tasks share them
+                    task = createTask(place, open, new ArrayList<>(), fixed);
+                } else {
+                    // the task changes its own copies of the places
+                    Set<Place> taskOpen = CloneFactory.clone(open);
+                    task = createTask(find(taskOpen, place), taskOpen, new ArrayList<>(), CloneFactory.clone(fixed));
+                }
+                if (task != null) {
+                    plannerTasks.add(task);
+                }
+            }
+        }
+
+        if (warmStart && searchMode == Enums.SearchMode.IN_PLACE) {
+            warmStart(plannerTasks);
+        }
+        ThreadManager.forkAll(searchPool, plannerTasks, getSearchTime(), TimeUnit.MILLISECONDS, this::stopSearch);
+
+        LOGGER.log(Level.FINE, "Finished planning for the city ({0}). Number of solutions found: {1}, nodes: {2}",
+                   new Object[]{city.getName(), solutionsCount.get(), nodesCount.sum()});
+
+        return improve(endSearch());
+    }
+
+    /* endSearch - End the search (before the itineraries are improved) and get its itineraries
+     *             The search timed out if it ran until the end given by its time limit: the tasks still running were
+     *             stopped or the searches found their time up (a portfolio stopped by the exact search ends before)
+     *
+     *  @return                 : the itineraries sorted by their score
+     */
+    private List<List<Place>> endSearch() {
+        timedOut = System.nanoTime() >= searchEnd;
+        return sortItineraries();
+    }
+
+    /* improve - Improve the itineraries found by the search with the neighborhood search, if it is enabled
+     *
+     *  @return                 : the itineraries
+     *  @itineraries            : the itineraries found by the search
+     */
+    private List<List<Place>> improve(List<List<Place>> itineraries) {
+        if (improvementTime <= 0 || itineraries.isEmpty() || stopped) {
+            return itineraries;
+        }
+
+        List<List<Place>> improved = improve(itineraries, improvementTime);
+        LOGGER.log(Level.FINE, "Improved the itineraries for the city ({0}) in {1} ms", new Object[]{city.getName(),
+                   improvementTime});
+        return improved;
+    }
+
+    /* warmStart - Dive greedily from the first place of each task before starting the tasks (in microseconds)
+     *             Each dive goes to the neighbor with the best reward (like NeighborRewardComparator), backtracking
+     *             only from dead ends, so the best score is known and the tasks prune from their first node
+     *             The itineraries found are saved in the plans like any other ones
+     *
+     *  @return                 : void
+     *  @plannerTasks           : the tasks of the in place search
+     */
+    private void warmStart(List<PlannerTask> plannerTasks) {
+        for (PlannerTask task : plannerTasks) {
+            task.dive();
+        }
+
+        LOGGER.log(Level.FINE, "Warm start for the city ({0}) found {1} solutions in {2} ms, best score: {3}",
+                   new Object[]{city.getName(), solutionsCount.get(),
+                                (System.nanoTime() - startTimeMeasure) / 1000000.0, getBestScore()});
+    }
+
+    /* getSearchTime - Get how long the search can run, the time of the neighborhood search is part of the limit
+     *                  and the search ends before the deadline of the request
+     *
+     *  @return                 : the time (milliseconds)
+     */
+    private long getSearchTime() {
+        long limit = timeLimit;
+        if (requestDeadline != Long.MAX_VALUE) {
+            limit = Math.min(limit, TimeUnit.NANOSECONDS.toMillis(requestDeadline - System.nanoTime()));
+        }
+        return Math.max(1, limit - improvementTime);
+    }
+
+    /* sortItineraries - Sorts the plan that will be sent to user
+     *
+     *  @return                 : sorted itineraries based on their score (descending)
+     */
+    private List<List<Place>> sortItineraries() {
+        return topItineraries.getItineraries();
+    }
+
+    /* evaluateReward - Evaluate the score for going from current place to next place at a given time
+     *
+     *  @return                 : the reward for going from current place to next place at that time
      *                            considering the distance between and the rating of the next place
      *  @current                : the current place
      *  @next                   : the next place
@@ -781,9 +2347,9 @@ public class Planner {
         double reward;
 
         if (travelMode == Enums.TravelMode.DRIVING) {
-            distance = Math.min(durationWalking[current.id][next.id], durationDriving[current.id][next.id]);
+            distance = matrix.getShortestDuration(current.id, next.id);
         } else {
-            distance = durationWalking[current.id][next.id];
+            distance = matrix.getDuration(Enums.TravelMode.WALKING, current.id, next.id);
         }
 
         reward = (1 / distance) * heuristicValue + next.rating * (1 - heuristicValue);
@@ -802,34 +2368,74 @@ public class Planner {
     }
 
     /* generateRewards - Generate the rewards
+     *                   Each hour of the day is independent, so the hours are filled in parallel for big requests
      *
      *  @return                 : void
-     *  @places                 : the rewards will be calculated only for this places
      */
-    private void generateRewards(List<Place> places) {
-        int dayOfWeek = timeFrame.getOpenDays().get(0);
-        LocalDateTime movingHour = timeFrame.getInterval(dayOfWeek).getStart();
-        rewards = new HashMap<>();
-
-        for (int time = 0; time < 24; time++) {
-            movingHour = movingHour.plusHours(1);
-            rewards.put(movingHour.getHour(), new HashMap<>());
+    void generateRewards() {
+        LocalDateTime startHour = timeFrame.getInterval(planningDay).getStart();
+        int n = indexedPlaces.length;
+        rewards = new double[24 * n * n];
+
+        IntStream hours = IntStream.rangeClosed(1, 24);
+        if (n >= Constants.PARALLEL_REWARDS_MIN_PLACES) {
+            hours = hours.parallel();
+        }
 
-            for (int i = 0; i < places.size(); i++) {
-                Place current = places.get(i);
-                rewards.get(movingHour.getHour()).put(current.id, new HashMap<>());
+        hours.forEach(offset -> measure(() -> {
+            LocalDateTime movingHour = startHour.plusHours(offset);
+            int base = movingHour.getHour() * n * n;
 
-                for (int j = 0; j < places.size(); j++) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
                     if (i == j) {
                         continue;
                     }
+                    rewards[base + i * n + j] = evaluateReward(indexedPlaces[i], indexedPlaces[j], movingHour);
+                }
+            }
+            return null;
+        }));
+    }
+
+    /* initBounds - Precompute what the admissible bound needs from the rewards and the durations
+     *              An edge reward is the same at every hour except the hours of the fixed time bonus,
+     *              so the smallest reward over the hours is the reward without the bonus
+     *
+     *  @return                 : void
+     */
+    private void initBounds() {
+        int n = indexedPlaces.length;
+        bestRewardsTo = new double[n];
+        fixedBonuses = new double[n];
+        userStart = toSeconds(timeFrame.getInterval(planningDay).getStart());
+        userEnd = openingSeconds[(n * 8 + planningDay) * 2 + 1];
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i == j) {
+                    continue;
+                }
 
-                    Place next = places.get(j);
-                    double reward = evaluateReward(current, next, movingHour);
-                    rewards.get(movingHour.getHour()).get(current.id).put(next.id, reward);
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (int hour = 0; hour < 24; hour++) {
+                    double reward = rewards[(hour * n + i) * n + j];
+                    min = Math.min(min, reward);
+                    max = Math.max(max, reward);
                 }
+
+                bestRewardsTo[j] = Math.max(bestRewardsTo[j], min);
+                fixedBonuses[i] = Math.max(fixedBonuses[i], max - min);
             }
         }
+
+        byBestReward = IntStream.range(0, n).boxed()
+                                .sorted((i, j) -> Double.compare(bestRewardsTo[j], bestRewardsTo[i]))
+                                .mapToInt(Integer::intValue).toArray();
+        byDuration = IntStream.range(0, n).boxed()
+                              .sorted(Comparator.comparingInt(i -> indexedPlaces[i].durationVisit))
+                              .mapToInt(Integer::intValue).toArray();
     }
 
     /* getReward - Get the reward for going from current place to the next place at the specified time
@@ -843,7 +2449,33 @@ public class Planner {
         if (current.id == next.id) {
             return 0;
         }
-        return rewards.get(time.getHour()).get(current.id).get(next.id);
+        return getReward(localIndexes.get(current.id), localIndexes.get(next.id), time);
+    }
+
+    /* getReward - Get the reward for going from current place to the next place at the specified time
+     *             The reward for staying in the same place is 0
+     *
+     *  @return                 : the reward
+     *  @current                : local index of the current place
+     *  @next                   : local index of the next place
+     *  @time                   : the current time
+     */
+    private double getReward(int current, int next, LocalDateTime time) {
+        int n = indexedPlaces.length;
+        return rewards[(time.getHour() * n + current) * n + next];
+    }
+
+    /* getReward - Same as above, but the time is given in seconds from the midnight of the planning day
+     *
+     *  @return                 : the reward
+     *  @current                : local index of the current place
+     *  @next                   : local index of the next place
+     *  @time                   : the current time in seconds
+     */
+    double getReward(int current, int next, int time) {
+        int n = indexedPlaces.length;
+        int hour = (time / 3600) % 24;
+        return rewards[(hour * n + current) * n + next];
     }
 
     /* setHeuristicValue - Set the heuristic value
@@ -855,6 +2487,303 @@ public class Planner {
         this.heuristicValue = heuristicValue;
     }
 
+    /* setSearchMode - Set how the planner explores the search tree
+     *
+     *  @return                 : void
+     *  @searchMode             : the search mode
+     */
+    void setSearchMode(Enums.SearchMode searchMode) {
+        this.searchMode = searchMode;
+    }
+
+    /* getSearchMode - Get how the planner explores the search tree
+     *
+     *  @return                 : the search mode
+     */
+    Enums.SearchMode getSearchMode() {
+        return searchMode;
+    }
+
+    /* setPruningBound - Set how the planner estimates the score that can still be added to a partial solution
+     *
+     *  @return                 : void
+     *  @pruningBound           : the bound
+     */
+    void setPruningBound(Enums.PruningBound pruningBound) {
+        this.pruningBound = pruningBound;
+    }
+
+    /* addNodes - Add the number of nodes visited by a task
+     *
+     *  @return                 : void
+     *  @nodes                  : the number of nodes
+     */
+    void addNodes(long nodes) {
+        nodesCount.add(nodes);
+    }
+
+    /* addCounters - Add the counters of a task of the in place search, once when the task finishes, so the visits
+     *               count on their own state
+     *
+     *  @return                 : void
+     *  @state                  : the search state of the task
+     */
+    void addCounters(SearchState state) {
+        nodesCount.add(state.nodes);
+        for (int i = 0; i < prunesCount.length; i++) {
+            prunesCount[i].add(state.prunes[i]);
+        }
+        if (state.first >= 0) {
+            firstPlacesNodes.addAndGet(state.first, state.nodes);
+        }
+    }
+
+    /* getPrunesCount - Get the number of nodes (or labels) not extended by the search so far for the given reason
+     *
+     *  @return                 : the number of prunes
+     *  @reason                 : the reason
+     */
+    long getPrunesCount(Enums.PruneReason reason) {
+        return prunesCount[reason.ordinal()].sum();
+    }
+
+    /* getSolutionsCount - Get the number of itineraries which got in the top itineraries
+     *
+     *  @return                 : the number of improvements
+     */
+    int getSolutionsCount() {
+        return solutionsCount.get();
+    }
+
+    /* getNodesCount - Get the number of nodes visited by the search so far
+     *
+     *  @return                 : the number of nodes
+     */
+    long getNodesCount() {
+        return nodesCount.sum();
+    }
+
+    /* getTimeToFirstSolution - Get how long it took from the start of the search to the first itinerary
+     *
+     *  @return             : the time in nanoseconds or -1 if no itinerary was found
+     */
+    long getTimeToFirstSolution() {
+        return timeToFirstSolution;
+    }
+
+    /* getTimeToBestSolution - Get how long it took from the start of the search to the best itinerary
+     *
+     *  @return             : the time in nanoseconds or -1 if no itinerary was found
+     */
+    long getTimeToBestSolution() {
+        synchronized (incumbent) {
+            return timeToBestSolution;
+        }
+    }
+
+    /* getRewardsTime - Get how long the rewards of the request were generated
+     *
+     *  @return             : the time in nanoseconds
+     */
+    long getRewardsTime() {
+        return rewardsTime;
+    }
+
+    /* getSearchDuration - Get how long the search ran, after the planner was initialized
+     *
+     *  @return             : the time in nanoseconds
+     */
+    long getSearchDuration() {
+        return searchTime;
+    }
+
+    /* getSearchShortfall - Get how much search time the deadline of the request took from a search which was still
+     *                      running when its time was up, a plan found with the whole time limit may be better
+     *
+     *  @return                 : the time (milliseconds), 0 if the search finished
+     */
+    long getSearchShortfall() {
+        return timedOut ? searchShortfall : 0;
+    }
+
+    /* isTimedOut - Checks if the search was still running when its time was up, so it may have missed
+     *              better itineraries
+     *
+     *  @return             : true/false
+     */
+    boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /* setWarmStart - Set if the in place search starts with the greedy dives (see warmStart)
+     *
+     *  @return             : void
+     *  @warmStart          : true/false
+     */
+    void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    /* getBestScore - Get the score of the best itinerary found so far
+     *
+     *  @return                 : the score (negative infinity if there is no itinerary)
+     */
+    double getBestScore() {
+        synchronized (incumbent) {
+            return winnerScore;
+        }
+    }
+
+    /* setSearchPool - Set the fork/join pool where the planner tasks are executed
+     *
+     *  @return                 : void
+     *  @searchPool             : the pool
+     */
+    void setSearchPool(ForkJoinPool searchPool) {
+        this.searchPool = searchPool;
+    }
+
+    /* setBeamWidth - Set the number of labels extended for each number of places by the beam search
+     *
+     *  @return             : void
+     *  @beamWidth          : the width
+     */
+    void setBeamWidth(int beamWidth) {
+        this.beamWidth = beamWidth;
+    }
+
+    /* setAlternatives - Set the number of itineraries of the plan, the searches prune less with more of them
+     *
+     *  @return             : void
+     *  @alternatives       : the number of itineraries
+     */
+    void setAlternatives(int alternatives) {
+        this.alternatives = alternatives;
+    }
+
+    /* setMinDistance - Set how different the itineraries of the plan are (the Jaccard distance of their places)
+     *
+     *  @return             : void
+     *  @minDistance        : the distance between 0 and 1
+     */
+    void setMinDistance(double minDistance) {
+        this.minDistance = minDistance;
+    }
+
+    /* setPlanningDay - Set the day of the week to plan, the first open day of the user by default
+     *
+     *  @return             : void
+     *  @planningDay        : the day of the week (1 is Sunday), an open day of the user time frame
+     */
+    void setPlanningDay(int planningDay) {
+        this.planningDay = planningDay;
+    }
+
+    /* getPlanningDay - Get the day of the week planned (known after getPlan)
+     *
+     *  @return             : the day of the week
+     */
+    int getPlanningDay() {
+        return planningDay;
+    }
+
+    /* setTimeLimit - Set how long the search can run, the best itineraries found until then are returned
+     *
+     *  @return             : void
+     *  @timeLimit          : the limit in milliseconds
+     */
+    void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /* setRequestDeadline - Set when the response of the request is due, the searches stop before it even if their
+     *                      time limit is not up (the request waited for a thread or for the city)
+     *
+     *  @return             : void
+     *  @requestDeadline    : the deadline (System.nanoTime)
+     */
+    void setRequestDeadline(long requestDeadline) {
+        this.requestDeadline = requestDeadline;
+    }
+
+    /* setImprovementTime - Set how long the neighborhood search improves the itineraries found by the search
+     *                      The time is part of the time limit
+     *
+     *  @return             : void
+     *  @improvementTime    : the time in milliseconds (0 to skip the neighborhood search)
+     */
+    void setImprovementTime(long improvementTime) {
+        this.improvementTime = improvementTime;
+    }
+
+    /* getWinner - Get the search which found the best itinerary (for the portfolio, the winner of the race)
+     *             NEIGHBORHOOD if the neighborhood search improved the itineraries of the search
+     *
+     *  @return             : the search mode
+     */
+    Enums.SearchMode getWinner() {
+        return winner;
+    }
+
+    /* setProfile - Set if the planner collects the profile of the search (see getProfile)
+     *
+     *  @return             : void
+     *  @profile            : true/false
+     */
+    void setProfile(boolean profile) {
+        this.profile = profile;
+    }
+
+    /* getProfile - Get the report of a profiled search, built from the counters of the planner:
+     *              - initMs, rewardsMs, searchMs and cpuMs: the time spent in each part (the rewards are part of init)
+     *              - finished: false if the search was cut off by its time limit
+     *              - nodes, prunes (by reason) and firstPlaces (the nodes or labels by the first place)
+     *              - improvements: when the best score improved, the score and the search which found it
+     *
+     *  @return             : the report
+     */
+    JSONObject getProfile() {
+        JSONObject prunes = new JSONObject();
+        for (Enums.PruneReason reason : PRUNE_REASONS) {
+            prunes.put(reason.name(), getPrunesCount(reason));
+        }
+
+        JSONArray firstPlaces = new JSONArray();
+        for (int i = 0; i < indexedPlaces.length; i++) {
+            if (firstPlacesNodes.get(i) > 0) {
+                firstPlaces.put(new JSONObject().put("id", indexedPlaces[i].id)
+                                                .put("name", indexedPlaces[i].name)
+                                                .put("nodes", firstPlacesNodes.get(i)));
+            }
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("mode", searchMode.name());
+        report.put("winner", winner == null ? JSONObject.NULL : winner.name());
+        report.put("initMs", initTime / 1e6);
+        report.put("rewardsMs", rewardsTime / 1e6);
+        report.put("searchMs", searchTime / 1e6);
+        report.put("cpuMs", getCpuTime() / 1e6);
+        report.put("finished", !timedOut);
+        report.put("nodes", getNodesCount());
+        report.put("prunes", prunes);
+        report.put("firstPlaces", firstPlaces);
+        synchronized (incumbent) {
+            report.put("improvements", new JSONArray(improvements));
+        }
+        return report;
+    }
+
+    /* setItineraryListener - Set the listener called with each itinerary which improves the best score
+     *                        It is called from the search threads, so it must be thread safe and return quickly
+     *
+     *  @return             : void
+     *  @itineraryListener  : the listener
+     */
+    void setItineraryListener(Consumer<List<Place>> itineraryListener) {
+        this.itineraryListener = itineraryListener;
+    }
+
     /* setBreakfast - Set the breakfast for the current plan
      *
      *  @return                 : void
@@ -1002,20 +2931,29 @@ public class Planner {
     static JSONArray serialize(List<List<Place>> plan) {
         JSONArray response = new JSONArray();
         for (List<Place> itinerary : plan) {
-            JSONObject itineraryInfo = new JSONObject();
-            JSONArray route = new JSONArray();
-
-            itineraryInfo.put("stats", getStats(itinerary).serialize());
-            for (Place place : itinerary) {
-                route.put(serialize(place));
-            }
-            itineraryInfo.put("route", route);
-            response.put(itineraryInfo);
+            response.put(serializeItinerary(itinerary));
         }
 
         return response;
     }
 
+    /* serializeItinerary - Serialize an itinerary into a json format (an element of the serialized plan)
+     *
+     *  @return             : the serialized itinerary
+     *  @itinerary          : the itinerary
+     */
+    static JSONObject serializeItinerary(List<Place> itinerary) {
+        JSONObject itineraryInfo = new JSONObject();
+        JSONArray route = new JSONArray();
+
+        itineraryInfo.put("stats", getStats(itinerary).serialize());
+        for (Place place : itinerary) {
+            route.put(serialize(place));
+        }
+        itineraryInfo.put("route", route);
+        return itineraryInfo;
+    }
+
     /* serializeToPlan - Serialize the place into a json format which is used for plan representation
      *
      *  @return       : the serialized place
@@ -1031,6 +2969,7 @@ public class Planner {
         response.put("durationToNext", place.durationToNext);
         response.put("distanceToNext", place.distanceToNext);
         response.put("plannedHour", Interval.serialize(place.plannedHour));
+        response.put("fixedAt", place.fixedAt);
         response.put("getCarBack", place.getCarBack);
         response.put("parkHere", place.parkHere);
         response.put("carPlaceId", place.carPlaceId);
@@ -6,20 +6,25 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.concurrent.RecursiveTask;
 
 /* PlannerTask - This is used for the load balancing module which starts looking for a solution from a different thread
+ *               The in place search can split its subtrees in more tasks (SubtreeTask) while running in the pool
  *
  */
-public class PlannerTask implements Callable<Boolean> {
+public class PlannerTask extends RecursiveTask<Boolean> {
+    private static final long serialVersionUID = 1L;
     private Place current;
+    private int currentIndex;
     private Set<Place> open;
     private List<Place> solution;
     private LocalDateTime time;
+    private int seconds;
     private double score;
     private int carPlaceId;
     private int returnDurationToCar;
     private PriorityQueue<Place> fixed;
+    private SearchState state;
     private Planner planner;
 
     PlannerTask(Place current, Set<Place> open, List<Place> solution, LocalDateTime time, double score, int carPlaceId,
@@ -35,14 +40,54 @@ public class PlannerTask implements Callable<Boolean> {
         this.planner = planner;
     }
 
+    PlannerTask(int currentIndex, SearchState state, int seconds, double score, int carPlaceId,
+                int returnDurationToCar, Planner planner) {
+        this.currentIndex = currentIndex;
+        this.state = state;
+        this.seconds = seconds;
+        this.score = score;
+        this.carPlaceId = carPlaceId;
+        this.returnDurationToCar = returnDurationToCar;
+        this.planner = planner;
+    }
+
+    /* dive - Follow the neighbors with the best reward from the first place of the task until an itinerary is
+     *        reached (the greedy dive of the in place search), on the calling thread
+     *        The state of the task is copied, so the task can still be executed later
+     *
+     *  @return         : void
+     */
+    void dive() {
+        if (state == null) {
+            return;
+        }
+
+        SearchState copy = new SearchState(state);
+        copy.greedy = true;
+        planner.visit(copy, currentIndex, seconds, score, carPlaceId, returnDurationToCar);
+        planner.addCounters(copy);
+    }
+
     @Override
-    public Boolean call() {
-        try {
-            planner.visit(current, open, solution, time, score, carPlaceId, returnDurationToCar, fixed);
-        } catch (Exception e) {
-            e.printStackTrace();
+    protected Boolean compute() {
+        // the task did not start before the time was up
+        if (planner.isTimeUp()) {
             return false;
         }
-        return true;
+
+        return planner.measure(() -> {
+            try {
+                if (state != null) {
+                    planner.visit(state, currentIndex, seconds, score, carPlaceId, returnDurationToCar);
+                    planner.addCounters(state);
+                } else {
+                    planner.visit(current, open, solution, time, score, carPlaceId, returnDurationToCar, fixed);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                return false;
+            }
+            return true;
+        });
     }
 }
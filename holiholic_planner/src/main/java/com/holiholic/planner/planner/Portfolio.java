@@ -0,0 +1,86 @@
+package com.holiholic.planner.planner;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/* Portfolio - Race the searches of a planner on the same request
+ *             The greedy itineraries are built first (they take microseconds), then the exact search, the beam
+ *             search and the neighborhood search run at the same time until the time limit
+ *             They share the best score of the planner: each itinerary improving it is published at once and
+ *             prunes the exact and the beam searches (see Planner.searchLabels), the planner records which
+ *             search published the best itinerary (the winner)
+ *             When the exact search finishes before the time limit, the best itinerary is optimal, so the other
+ *             searches are stopped
+ *
+ */
+final class Portfolio {
+    private final Planner planner;
+    private final ExecutorService executor;
+    private final int beamWidth;
+
+    Portfolio(Planner planner, ExecutorService executor, int beamWidth) {
+        this.planner = planner;
+        this.executor = executor;
+        this.beamWidth = beamWidth;
+    }
+
+    /* run - Race the searches until the time limit of the planner or until the exact search finishes
+     *       The exact search runs on the calling thread, the other ones on the executor
+     *       If the executor rejects a search (all its threads are busy), the request is rejected
+     *
+     *  @return             : void
+     *  @places             : the number of places of the request
+     */
+    void run(int places) {
+        Route greedy = planner.searchGreedy();
+        if (greedy == null) {
+            // no place can be visited, the other searches would not find anything either
+            return;
+        }
+
+        // the visited places of the exact and beam searches are a bitmask
+        boolean labels = places <= DominanceTable.MAX_PLACES;
+        Future<?> beam = null;
+        Future<?> neighborhood;
+        try {
+            if (labels) {
+                beam = executor.submit(() -> planner.measure(() -> planner.searchLabels(beamWidth)));
+            }
+            neighborhood = executor.submit(() -> planner.measure(() -> planner.searchNeighborhood(greedy)));
+        } catch (RejectedExecutionException e) {
+            // the beam search may be running already
+            planner.stopSearch();
+            join(beam);
+            throw e;
+        }
+
+        if (labels) {
+            planner.searchLabels(Integer.MAX_VALUE);
+            if (!planner.isTimeUp()) {
+                // the exact search finished, nothing better can be found
+                planner.stopSearch();
+            }
+        }
+
+        join(beam);
+        join(neighborhood);
+    }
+
+    /* join - Wait for a search to finish
+     *
+     *  @return             : void
+     *  @future             : the running search (null if it was not started)
+     */
+    private static void join(Future<?> future) {
+        if (future == null) {
+            return;
+        }
+
+        try {
+            future.get();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
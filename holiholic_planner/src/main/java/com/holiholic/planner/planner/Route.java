@@ -0,0 +1,93 @@
+package com.holiholic.planner.planner;
+
+/* Route - An itinerary of the neighborhood search as a sequence of local indexes
+ *         The schedule (start of each visit, the time waited before it, where the car is parked) and the score are
+ *         filled by Planner.evaluateRoute, which also drops the places that can not be visited at their position
+ *
+ */
+final class Route {
+    // local indexes of the places in the order of the visits
+    final int[] places;
+    int size = 0;
+    // the schedule by position in the route
+    final int[] times;
+    final int[] waits;
+    final int[] cars;
+    double score = Double.NEGATIVE_INFINITY;
+    // reusable buffers for the travel information between two places
+    final int[] travel = new int[Planner.TRAVEL_INFO_SIZE];
+    final int[] buffer = new int[Planner.TRAVEL_INFO_SIZE];
+
+    Route(int capacity) {
+        this.places = new int[capacity];
+        this.times = new int[capacity];
+        this.waits = new int[capacity];
+        this.cars = new int[capacity];
+    }
+
+    /* copyFrom - Replace this route with another one having the same capacity
+     *
+     *  @return             : void
+     *  @other              : the route to copy
+     */
+    void copyFrom(Route other) {
+        System.arraycopy(other.places, 0, places, 0, other.size);
+        System.arraycopy(other.times, 0, times, 0, other.size);
+        System.arraycopy(other.waits, 0, waits, 0, other.size);
+        System.arraycopy(other.cars, 0, cars, 0, other.size);
+        size = other.size;
+        score = other.score;
+    }
+
+    /* contains - Checks if the place is in the route
+     *
+     *  @return             : true/false
+     *  @index              : local index of the place
+     */
+    boolean contains(int index) {
+        for (int i = 0; i < size; i++) {
+            if (places[i] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* insert - Insert a place at the given position
+     *
+     *  @return             : void
+     *  @position           : the position (0 .. size)
+     *  @index              : local index of the place
+     */
+    void insert(int position, int index) {
+        System.arraycopy(places, position, places, position + 1, size - position);
+        places[position] = index;
+        size++;
+    }
+
+    /* remove - Remove the place at the given position
+     *
+     *  @return             : the local index of the removed place
+     *  @position           : the position (0 .. size - 1)
+     */
+    int remove(int position) {
+        int index = places[position];
+        System.arraycopy(places, position + 1, places, position, size - position - 1);
+        size--;
+        return index;
+    }
+
+    /* reverse - Reverse the order of the places between two positions (2-opt)
+     *
+     *  @return             : void
+     *  @from               : the first position
+     *  @to                 : the last position (included)
+     */
+    void reverse(int from, int to) {
+        for (int i = from, j = to; i < j; i++, j--) {
+            int index = places[i];
+            places[i] = places[j];
+            places[j] = index;
+        }
+    }
+}
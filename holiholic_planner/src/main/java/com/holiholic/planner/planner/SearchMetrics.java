@@ -0,0 +1,73 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.utils.Enums;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/* SearchMetrics - Publishes the counters of a finished search on the Micrometer registry (/actuator/metrics)
+ *                 The searches count on their own state or in LongAdders and the meters are updated once per
+ *                 request, so measuring adds nothing to the visits
+ *                 All the meters are tagged by city, size (the request size rounded up to SIZE_STEP) and mode
+ *
+ */
+final class SearchMetrics {
+    // the sizes of the requests are grouped, so the number of series stays small
+    private static final int SIZE_STEP = 8;
+
+    private SearchMetrics() {
+
+    }
+
+    /* record - Publish the counters of the search of a request
+     *
+     *  @return             : void
+     *  @planner            : the planner after the search
+     *  @cityName           : the city of the request
+     *  @places             : the number of places of the request
+     */
+    static void record(Planner planner, String cityName, int places) {
+        Tags tags = Tags.of("city", String.valueOf(cityName),
+                            "size", getSizeTag(places),
+                            "mode", String.valueOf(planner.getSearchMode()));
+
+        Metrics.counter("planner.search.nodes", tags).increment(planner.getNodesCount());
+        for (Enums.PruneReason reason : Enums.PruneReason.values()) {
+            Metrics.counter("planner.search.prunes", tags.and("reason", reason.name()))
+                   .increment(planner.getPrunesCount(reason));
+        }
+        Metrics.counter("planner.search.improvements", tags).increment(planner.getSolutionsCount());
+
+        getTimer("planner.search", tags.and("timedOut", String.valueOf(planner.isTimedOut())))
+                .record(planner.getSearchDuration(), TimeUnit.NANOSECONDS);
+        getTimer("planner.rewards", tags).record(planner.getRewardsTime(), TimeUnit.NANOSECONDS);
+        // the CPU time of all the threads which worked for the request, not only the one waiting for the search
+        getTimer("planner.search.cpu", tags).record(planner.getCpuTime(), TimeUnit.NANOSECONDS);
+        if (planner.getTimeToFirstSolution() >= 0) {
+            getTimer("planner.search.first", tags).record(planner.getTimeToFirstSolution(), TimeUnit.NANOSECONDS);
+            getTimer("planner.search.best", tags).record(planner.getTimeToBestSolution(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /* getSizeTag - Get the group of a request size, for example 9-16
+     *
+     *  @return             : the tag
+     *  @places             : the number of places of the request
+     */
+    static String getSizeTag(int places) {
+        int last = Math.max(1, (places + SIZE_STEP - 1) / SIZE_STEP) * SIZE_STEP;
+        return (last - SIZE_STEP + 1) + "-" + last;
+    }
+
+    /* getTimer - Get a timer publishing its histogram, so the percentiles can be aggregated
+     *
+     *  @return             : the timer
+     *  @name               : the name of the timer
+     *  @tags               : the tags
+     */
+    static Timer getTimer(String name, Tags tags) {
+        return Timer.builder(name).tags(tags).publishPercentileHistogram().register(Metrics.globalRegistry);
+    }
+}
@@ -0,0 +1,256 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.models.Place;
+import com.holiholic.planner.utils.Enums;
+
+import java.util.Arrays;
+
+/* SearchState - The mutable state of a single planner task used by the in place search
+ *               Instead of deep copying the context on every recursive call, the search changes this state
+ *               when visiting a place and rolls it back when backtracking
+ *               The places of the request are addressed by their local index, so the sets are bitmasks and the
+ *               planning information (time, travel to the next place etc) is kept in primitive arrays, so the
+ *               places themselves are never changed and can be shared between the tasks
+ *               Every change of the planning information is recorded in an undo log (parallel arrays as well)
+ *
+ */
+class SearchState {
+    static final int NOT_PLANNED = Integer.MIN_VALUE;
+
+    // the places by local index (read only), the last one is the start place
+    final Place[] places;
+    // local index of the start place
+    final int start;
+    final PlaceMask open;
+    // fixed places, the local indexes are sorted by the fixed time so the first one is the next to schedule
+    final PlaceMask fixed;
+    // places already in the solution
+    final PlaceMask visited;
+
+    // the solution as a stack of local indexes
+    private final int[] route;
+    private int routeSize = 0;
+
+    // planning information by local index, the times are seconds from the start of the planning day
+    final int[] plannedTimes;
+    final int[] durationsToNext;
+    final int[] distancesToNext;
+    final Enums.TravelMode[] travelModes;
+    final boolean[] getCarBacks;
+    final int[] carPlaceIds;
+    final boolean[] parkHeres;
+    final int[] waitTimes;
+
+    // number of nodes visited by the task owning this state
+    long nodes = 0;
+    // number of nodes not extended, by Enums.PruneReason (the task adds the counters to the planner when it finishes)
+    final long[] prunes = new long[Enums.PruneReason.values().length];
+    // local index of the first place of the itineraries of the task owning this state (-1 if not known)
+    int first = -1;
+    // number of complete itineraries reached by the task owning this state (better or not than the best one)
+    long solutions = 0;
+    // the greedy dive (see Planner.warmStart) follows only the first neighbor leading to an itinerary
+    boolean greedy = false;
+    // set when the task saw that the time is up, the visits return at once from then on
+    boolean stopped = false;
+    // reusable buffer for the travel information between two places
+    final int[] travel = new int[Planner.TRAVEL_INFO_SIZE];
+    // reusable buffers for sorting places, one for each depth of the solution
+    private int[][] indexBuffers = new int[0][];
+    private double[][] keyBuffers = new double[0][];
+
+    // the undo log
+    private int size = 0;
+    private int[] changed;
+    private int[] oldPlannedTimes;
+    private int[] oldDurationsToNext;
+    private int[] oldDistancesToNext;
+    private Enums.TravelMode[] oldTravelModes;
+    private boolean[] oldGetCarBacks;
+    private int[] oldCarPlaceIds;
+    private boolean[] oldParkHeres;
+    private int[] oldWaitTimes;
+
+    SearchState(Place[] places, Place start) {
+        int count = places.length;
+
+        this.places = Arrays.copyOf(places, count + 1);
+        this.places[count] = start;
+        this.start = count;
+        this.open = new PlaceMask(count);
+        this.fixed = new PlaceMask(count);
+        this.visited = new PlaceMask(count);
+        this.route = new int[count + 2];
+
+        this.plannedTimes = new int[count + 1];
+        this.durationsToNext = new int[count + 1];
+        this.distancesToNext = new int[count + 1];
+        this.travelModes = new Enums.TravelMode[count + 1];
+        this.getCarBacks = new boolean[count + 1];
+        this.carPlaceIds = new int[count + 1];
+        this.parkHeres = new boolean[count + 1];
+        this.waitTimes = new int[count + 1];
+
+        Arrays.fill(plannedTimes, NOT_PLANNED);
+        Arrays.fill(travelModes, Enums.TravelMode.UNKNOWN);
+        Arrays.fill(carPlaceIds, -1);
+        allocate(64);
+    }
+
+    // Copy the state when a subtree of the search is given to another task
+    // The places are shared because they are never changed, the undo log of the copy starts empty
+    SearchState(SearchState other) {
+        this.places = other.places;
+        this.start = other.start;
+        this.open = new PlaceMask(other.open);
+        this.fixed = new PlaceMask(other.fixed);
+        this.visited = new PlaceMask(other.visited);
+        this.route = other.route.clone();
+        this.routeSize = other.routeSize;
+        this.first = other.first;
+
+        this.plannedTimes = other.plannedTimes.clone();
+        this.durationsToNext = other.durationsToNext.clone();
+        this.distancesToNext = other.distancesToNext.clone();
+        this.travelModes = other.travelModes.clone();
+        this.getCarBacks = other.getCarBacks.clone();
+        this.carPlaceIds = other.carPlaceIds.clone();
+        this.parkHeres = other.parkHeres.clone();
+        this.waitTimes = other.waitTimes.clone();
+        allocate(64);
+    }
+
+    /* allocate - Resize the undo log to the given capacity keeping the current entries
+     *
+     *  @return             : void
+     *  @capacity           : the new capacity
+     */
+    private void allocate(int capacity) {
+        changed = Arrays.copyOf(changed == null ? new int[0] : changed, capacity);
+        oldPlannedTimes = Arrays.copyOf(oldPlannedTimes == null ? new int[0] : oldPlannedTimes, capacity);
+        oldDurationsToNext = Arrays.copyOf(oldDurationsToNext == null ? new int[0] : oldDurationsToNext, capacity);
+        oldDistancesToNext = Arrays.copyOf(oldDistancesToNext == null ? new int[0] : oldDistancesToNext, capacity);
+        oldTravelModes = Arrays.copyOf(oldTravelModes == null ? new Enums.TravelMode[0] : oldTravelModes, capacity);
+        oldGetCarBacks = Arrays.copyOf(oldGetCarBacks == null ? new boolean[0] : oldGetCarBacks, capacity);
+        oldCarPlaceIds = Arrays.copyOf(oldCarPlaceIds == null ? new int[0] : oldCarPlaceIds, capacity);
+        oldParkHeres = Arrays.copyOf(oldParkHeres == null ? new boolean[0] : oldParkHeres, capacity);
+        oldWaitTimes = Arrays.copyOf(oldWaitTimes == null ? new int[0] : oldWaitTimes, capacity);
+    }
+
+    /* push - Add a place at the end of the solution
+     *
+     *  @return             : void
+     *  @index              : local index of the place
+     */
+    void push(int index) {
+        route[routeSize++] = index;
+        if (index != start) {
+            visited.add(index);
+        }
+    }
+
+    /* pop - Remove the last place of the solution
+     *
+     *  @return             : void
+     */
+    void pop() {
+        int index = route[--routeSize];
+        if (index != start) {
+            visited.remove(index);
+        }
+    }
+
+    /* routeSize - Get the number of places in the solution
+     *
+     *  @return             : the number of places
+     */
+    int routeSize() {
+        return routeSize;
+    }
+
+    /* routeAt - Get the place at the given position in the solution
+     *
+     *  @return             : the local index of the place
+     *  @position           : the position in the solution
+     */
+    int routeAt(int position) {
+        return route[position];
+    }
+
+    /* indices - Get the reusable buffer of local indexes for the given depth
+     *
+     *  @return             : a buffer having at least the given size
+     *  @depth              : the depth of the solution
+     *  @size               : the minimum size of the buffer
+     */
+    int[] indices(int depth, int size) {
+        if (depth >= indexBuffers.length) {
+            indexBuffers = Arrays.copyOf(indexBuffers, depth + 1);
+            keyBuffers = Arrays.copyOf(keyBuffers, depth + 1);
+        }
+        if (indexBuffers[depth] == null || indexBuffers[depth].length < size) {
+            indexBuffers[depth] = new int[size];
+            keyBuffers[depth] = new double[size];
+        }
+        return indexBuffers[depth];
+    }
+
+    /* keys - Get the reusable buffer of sort keys for the given depth (allocated together with the indices)
+     *
+     *  @return             : the buffer
+     *  @depth              : the depth of the solution
+     */
+    double[] keys(int depth) {
+        return keyBuffers[depth];
+    }
+
+    /* mark - Get the current position in the undo log
+     *
+     *  @return             : the position which can be passed later to rollback
+     */
+    int mark() {
+        return size;
+    }
+
+    /* save - Record the planning information of a place that the search is going to change
+     *
+     *  @return             : void
+     *  @index              : local index of the place
+     */
+    void save(int index) {
+        if (size == changed.length) {
+            allocate(size * 2);
+        }
+
+        changed[size] = index;
+        oldPlannedTimes[size] = plannedTimes[index];
+        oldDurationsToNext[size] = durationsToNext[index];
+        oldDistancesToNext[size] = distancesToNext[index];
+        oldTravelModes[size] = travelModes[index];
+        oldGetCarBacks[size] = getCarBacks[index];
+        oldCarPlaceIds[size] = carPlaceIds[index];
+        oldParkHeres[size] = parkHeres[index];
+        oldWaitTimes[size] = waitTimes[index];
+        size++;
+    }
+
+    /* rollback - Restore the planning information recorded after the given mark (newest first)
+     *
+     *  @return             : void
+     *  @mark               : the position returned by mark
+     */
+    void rollback(int mark) {
+        while (size > mark) {
+            size--;
+            int index = changed[size];
+            plannedTimes[index] = oldPlannedTimes[size];
+            durationsToNext[index] = oldDurationsToNext[size];
+            distancesToNext[index] = oldDistancesToNext[size];
+            travelModes[index] = oldTravelModes[size];
+            getCarBacks[index] = oldGetCarBacks[size];
+            carPlaceIds[index] = oldCarPlaceIds[size];
+            parkHeres[index] = oldParkHeres[size];
+            waitTimes[index] = oldWaitTimes[size];
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.holiholic.planner.planner;
+
+import java.util.concurrent.RecursiveTask;
+
+/* SubtreeTask - A part of the in place search forked when the fork/join pool has idle workers
+ *               It explores the subtree of going from the current place to one of its neighbors on its own copy
+ *               of the search state, so the task which forked it can continue with the next neighbor
+ *
+ */
+class SubtreeTask extends RecursiveTask<Boolean> {
+    private static final long serialVersionUID = 1L;
+    private SearchState state;
+    private int current;
+    private int neighbor;
+    private double score;
+    private int time;
+    private int carPlaceId;
+    private int returnDurationToCar;
+    private Planner planner;
+
+    SubtreeTask(SearchState state, int current, int neighbor, double score, int time, int carPlaceId,
+                int returnDurationToCar, Planner planner) {
+        this.state = state;
+        this.current = current;
+        this.neighbor = neighbor;
+        this.score = score;
+        this.time = time;
+        this.carPlaceId = carPlaceId;
+        this.returnDurationToCar = returnDurationToCar;
+        this.planner = planner;
+    }
+
+    @Override
+    protected Boolean compute() {
+        return planner.measure(() -> {
+            try {
+                planner.visitNeighbor(state, current, neighbor, score, time, carPlaceId, returnDurationToCar);
+                planner.addCounters(state);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return false;
+            }
+            return true;
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.models.Place;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/* TopItineraries - The best itineraries found by the searches of one planner, at most count of them and different
+ *                  from each other: the Jaccard distance between the sets of places of any two of them is at least
+ *                  minDistance (1 - shared places / all places, the start is not counted)
+ *                  An itinerary too similar to a better one is dropped, one better than the similar ones replaces them
+ *                  Once the set is full, only an itinerary better than the worst one (the threshold) can get in,
+ *                  so the searches prune against the threshold instead of the best score
+ *
+ */
+final class TopItineraries {
+    private final int count;
+    private final double minDistance;
+    // sorted by score, the best first, guarded by this
+    private final List<Entry> entries = new ArrayList<>();
+
+    /* Entry - An itinerary with its score and the sorted ids of its places
+     *
+     */
+    private static class Entry {
+        private final double score;
+        private final List<Place> itinerary;
+        private final int[] ids;
+
+        private Entry(double score, List<Place> itinerary) {
+            this.score = score;
+            this.itinerary = itinerary;
+            this.ids = itinerary.stream().mapToInt(place -> place.id).filter(id -> id >= 0).sorted().distinct()
+                                .toArray();
+        }
+    }
+
+    TopItineraries(int count, double minDistance) {
+        this.count = Math.max(1, count);
+        this.minDistance = minDistance;
+    }
+
+    /* add - Add an itinerary, unless a better (or as good) itinerary is too similar to it or the set is full of
+     *       better ones
+     *
+     *  @return             : true if the itinerary was added
+     *  @score              : the score of the itinerary
+     *  @itinerary          : the itinerary (not changed anymore)
+     */
+    synchronized boolean add(double score, List<Place> itinerary) {
+        if (entries.size() == count && score <= getThreshold()) {
+            return false;
+        }
+
+        Entry entry = new Entry(score, itinerary);
+        for (Entry other : entries) {
+            if (other.score >= score && isSimilar(entry, other)) {
+                return false;
+            }
+        }
+
+        entries.removeIf(other -> isSimilar(entry, other));
+        int position = 0;
+        while (position < entries.size() && entries.get(position).score >= score) {
+            position++;
+        }
+        entries.add(position, entry);
+        if (entries.size() > count) {
+            entries.remove(entries.size() - 1);
+        }
+        return true;
+    }
+
+    /* getThreshold - Get the score an itinerary must beat to be added when the set is full
+     *
+     *  @return             : the score of the worst itinerary or -Infinity if the set is not full
+     */
+    synchronized double getThreshold() {
+        return entries.size() < count ? Double.NEGATIVE_INFINITY : entries.get(entries.size() - 1).score;
+    }
+
+    /* getItineraries - Get the itineraries, the best first
+     *
+     *  @return             : the itineraries
+     */
+    synchronized List<List<Place>> getItineraries() {
+        List<List<Place>> itineraries = new ArrayList<>();
+        for (Entry entry : entries) {
+            itineraries.add(entry.itinerary);
+        }
+        return itineraries;
+    }
+
+    /* isSimilar - Checks if the Jaccard distance between the places of two itineraries is below minDistance
+     *
+     *  @return             : true/false
+     */
+    private boolean isSimilar(Entry entry, Entry other) {
+        if (Arrays.equals(entry.ids, other.ids)) {
+            return true;
+        }
+
+        int shared = 0;
+        for (int i = 0, j = 0; i < entry.ids.length && j < other.ids.length; ) {
+            if (entry.ids[i] == other.ids[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (entry.ids[i] < other.ids[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int all = entry.ids.length + other.ids.length - shared;
+        return 1 - (double) shared / all < minDistance;
+    }
+}
@@ -0,0 +1,93 @@
+package com.holiholic.planner.planner;
+
+/* TopLabels - The best labels of one exact or beam search, kept like the top itineraries (see TopItineraries)
+ *             The places of a label are the bits of its mask, so the Jaccard distance is computed with bit counts
+ *             (the fixed places skipped by a label are counted as its places)
+ *             Used by a single search, so it is not thread safe
+ *
+ */
+final class TopLabels {
+    private final DominanceTable table;
+    private final int count;
+    private final double minDistance;
+    // sorted by score, the best first
+    private final int[] labels;
+    private int size;
+
+    TopLabels(DominanceTable table, int count, double minDistance) {
+        this.table = table;
+        this.count = Math.max(1, count);
+        this.minDistance = minDistance;
+        this.labels = new int[this.count];
+    }
+
+    /* add - Add a label, unless a better (or as good) label is too similar to it or the labels are all better
+     *
+     *  @return             : true if the label was added
+     *  @label              : the label
+     */
+    boolean add(int label) {
+        double score = table.getScore(label);
+        if (size == count && score <= getThreshold()) {
+            return false;
+        }
+
+        long mask = table.getMask(label);
+        for (int i = 0; i < size; i++) {
+            if (table.getScore(labels[i]) >= score && isSimilar(mask, table.getMask(labels[i]))) {
+                return false;
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!isSimilar(mask, table.getMask(labels[i]))) {
+                labels[kept++] = labels[i];
+            }
+        }
+        size = kept;
+
+        int position = size < count ? size : count - 1;
+        while (position > 0 && table.getScore(labels[position - 1]) < score) {
+            labels[position] = labels[position - 1];
+            position--;
+        }
+        labels[position] = label;
+        size = Math.min(size + 1, count);
+        return true;
+    }
+
+    /* getThreshold - Get the score a label must beat to be added when all the labels are kept
+     *                It is computed on each call, so it drops when a label replaced several similar ones
+     *
+     *  @return             : the score of the worst label or -Infinity if less than count labels are kept
+     */
+    double getThreshold() {
+        return size < count ? Double.NEGATIVE_INFINITY : table.getScore(labels[size - 1]);
+    }
+
+    /* getLabels - Get the labels, the worst first (the order in which the itineraries are published)
+     *
+     *  @return             : the labels
+     */
+    int[] getLabels() {
+        int[] ascending = new int[size];
+        for (int i = 0; i < size; i++) {
+            ascending[i] = labels[size - 1 - i];
+        }
+        return ascending;
+    }
+
+    /* isSimilar - Checks if the Jaccard distance between the places of two labels is below minDistance
+     *
+     *  @return             : true/false
+     *  @mask               : the places of a label
+     *  @other              : the places of the other label
+     */
+    private boolean isSimilar(long mask, long other) {
+        if (mask == other) {
+            return true;
+        }
+        return 1 - (double) Long.bitCount(mask & other) / Long.bitCount(mask | other) < minDistance;
+    }
+}
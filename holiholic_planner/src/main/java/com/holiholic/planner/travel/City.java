@@ -1,9 +1,11 @@
 package com.holiholic.planner.travel;
 
 import com.holiholic.places.api.PlaceCategory;
+import com.holiholic.planner.constant.Constants;
 import com.holiholic.planner.database.DatabaseManager;
 import com.holiholic.planner.models.Place;
 import com.holiholic.planner.utils.Enums;
+import com.holiholic.planner.utils.Interval;
 import com.holiholic.planner.utils.TimeFrame;
 
 import java.time.LocalDateTime;
@@ -16,13 +18,14 @@ import java.util.*;
 public class City {
     private String name;
     private Map<Integer, Place> places;
-    private Map<Enums.TravelMode, double[][]> distance;
-    private Map<Enums.TravelMode, double[][]> duration;
+    // the durations and the distances, replaced by a new matrix each time one of them is loaded (null until then)
+    private volatile TravelMatrix matrix;
+    // the beam width used by the planner for the large requests in this city
+    private int beamWidth;
 
     public City(String name) {
         this.name = name;
-        this.distance = new HashMap<>();
-        this.duration = new HashMap<>();
+        this.beamWidth = Integer.getInteger("planner.beamWidth." + name, Constants.BEAM_WIDTH);
     }
 
     /* getName - Get the city name
@@ -33,6 +36,23 @@ public class City {
         return name;
     }
 
+    /* getBeamWidth - Get the beam width used by the planner for the large requests in this city
+     *
+     *  @return         : the beam width
+     */
+    public int getBeamWidth() {
+        return beamWidth;
+    }
+
+    /* setBeamWidth - Set the beam width used by the planner for the large requests in this city
+     *
+     *  @return         : void
+     *  @beamWidth      : the beam width
+     */
+    public void setBeamWidth(int beamWidth) {
+        this.beamWidth = beamWidth;
+    }
+
     /* getPlaces - Get the places from the city
      *
      *  @return         : places
@@ -138,22 +158,22 @@ public class City {
         return placesList;
     }
 
-    /* getDistances - Get distance matrix based on the travel mode
+    /* getMatrix - Get the durations and the distances between the places, the same matrix for a whole request
+     *             even if the matrices are loaded again meanwhile
      *
-     *  @return             : distance matrix
-     *  @travelMode         : travel mode
+     *  @return             : the matrix (null if no matrix was loaded)
      */
-    public double[][] getDistances(Enums.TravelMode travelMode) {
-        return distance.get(travelMode);
+    public TravelMatrix getMatrix() {
+        return matrix;
     }
 
-    /* getDurations - Get duration matrix based on the travel mode
+    /* getMatrixBytes - Get the memory used by the durations and the distances between the places
      *
-     *  @return             : duration matrix
-     *  @travelMode         : travel mode
+     *  @return             : the number of bytes (0 if no matrix was loaded)
      */
-    public double[][] getDurations(Enums.TravelMode travelMode) {
-        return duration.get(travelMode);
+    public long getMatrixBytes() {
+        TravelMatrix matrix = this.matrix;
+        return matrix == null ? 0 : matrix.getBytes();
     }
 
     /* hasDistance - Check if the distance matrix is cached
@@ -162,7 +182,8 @@ public class City {
      *  @travelMode         : travel mode
      */
     private boolean hasDistance(Enums.TravelMode travelMode) {
-        return distance.containsKey(travelMode);
+        TravelMatrix matrix = this.matrix;
+        return matrix != null && matrix.has(Enums.TravelInfo.DISTANCE, travelMode);
     }
 
     /* hasDuration - Check if the duration matrix is cached
@@ -171,7 +192,8 @@ public class City {
      *  @travelMode         : travel mode
      */
     private boolean hasDuration(Enums.TravelMode travelMode) {
-        return duration.containsKey(travelMode);
+        TravelMatrix matrix = this.matrix;
+        return matrix != null && matrix.has(Enums.TravelInfo.DURATION, travelMode);
     }
 
     /* hasDistances - Check if the distance matrix is cached for both modes of travel
@@ -190,24 +212,41 @@ public class City {
         return hasDuration(Enums.TravelMode.DRIVING) && hasDuration(Enums.TravelMode.WALKING);
     }
 
-    /* setDistance - Set a distance matrix based on the travel mode
+    /* setDistance - Set a distance matrix based on the travel mode (packed in the travel matrix)
+     *               Public so cities can also be built without the database (for example synthetic cities)
      *
      *  @return             : void
      *  @travelMode         : travel mode
-     *  @distanceMatrix     : distance matrix
+     *  @distanceMatrix     : distance matrix (null if it could not be loaded)
      */
-    private void setDistance(Enums.TravelMode travelMode, double[][] distanceMatrix) {
-        distance.put(travelMode, distanceMatrix);
+    public void setDistance(Enums.TravelMode travelMode, double[][] distanceMatrix) {
+        setMatrix(Enums.TravelInfo.DISTANCE, travelMode, distanceMatrix);
     }
 
-    /* setDuration - Set a duration matrix based on the travel mode
+    /* setDuration - Set a duration matrix based on the travel mode (packed in the travel matrix)
+     *               Public so cities can also be built without the database (for example synthetic cities)
      *
      *  @return             : void
      *  @travelMode         : travel mode
-     *  @distanceMatrix     : duration matrix
+     *  @distanceMatrix     : duration matrix (null if it could not be loaded)
      */
-    private void setDuration(Enums.TravelMode travelMode, double[][] durationMatrix) {
-        duration.put(travelMode, durationMatrix);
+    public void setDuration(Enums.TravelMode travelMode, double[][] durationMatrix) {
+        setMatrix(Enums.TravelInfo.DURATION, travelMode, durationMatrix);
+    }
+
+    /* setMatrix - Publish a new travel matrix having the given values, the planners keep using the previous one
+     *
+     *  @return             : void
+     *  @travelInfo         : duration or distance
+     *  @travelMode         : travel mode
+     *  @values             : the values by the ids of the places (null if they could not be loaded)
+     */
+    private synchronized void setMatrix(Enums.TravelInfo travelInfo, Enums.TravelMode travelMode, double[][] values) {
+        if (values == null) {
+            return;
+        }
+        matrix = matrix == null ? TravelMatrix.create(travelInfo, travelMode, values)
+                                : matrix.with(travelInfo, travelMode, values);
     }
 
     /* setDurations - Set duration matrix for both modes of travel
@@ -249,10 +288,12 @@ public class City {
     public List<Place> getTopRestaurants(int limit, LocalDateTime time) {
         // min heap
         PriorityQueue<Place> pq = new PriorityQueue<>(Comparator.comparingDouble(p -> p.rating));
+        int dayOfWeek = Interval.getDayOfWeek(time);
+        int second = time.toLocalTime().toSecondOfDay();
 
         for (Map.Entry<Integer, Place> placeEntry : getPlaces().entrySet()) {
             if (placeEntry.getValue().placeCategory.getTopic().equals("Restaurants") &&
-                placeEntry.getValue().canVisit(time)) {
+                placeEntry.getValue().canVisit(dayOfWeek, second)) {
                 if (pq.size() < limit) {
                     pq.add(placeEntry.getValue());
 
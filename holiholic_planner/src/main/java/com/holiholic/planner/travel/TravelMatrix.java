@@ -0,0 +1,137 @@
+package com.holiholic.planner.travel;
+
+import com.holiholic.planner.utils.Enums;
+
+/* TravelMatrix - The durations and the distances between the places of a city, for driving and walking
+ *                The four matrices are packed in one row-major char array, the four values of a pair of places
+ *                next to each other (duration driving, duration walking, distance driving, distance walking), so
+ *                the planner reads the durations of both travel modes from the same cache line
+ *                The durations are kept in seconds and the distances in decameters (10 m), both rounded and
+ *                capped at 65535 (18 hours, 655 km), 8 bytes per pair instead of 32 for four double[n][n]
+ *                A matrix is never changed once published, setting one of the four values builds a new one
+ *
+ */
+public final class TravelMatrix {
+    private static final int VALUES = 4;
+    private static final int DISTANCE_UNIT = 10;
+    private final int size;
+    private final char[] values;
+    // the values set so far, a bit for each of the four matrices
+    private final int loaded;
+
+    private TravelMatrix(int size, char[] values, int loaded) {
+        this.size = size;
+        this.values = values;
+        this.loaded = loaded;
+    }
+
+    /* create - Create a matrix having one of the four values
+     *
+     *  @return             : the matrix
+     *  @travelInfo         : duration or distance
+     *  @travelMode         : driving or walking
+     *  @matrix             : the values by the ids of the places (seconds or meters)
+     */
+    static TravelMatrix create(Enums.TravelInfo travelInfo, Enums.TravelMode travelMode, double[][] matrix) {
+        return new TravelMatrix(matrix.length, new char[matrix.length * matrix.length * VALUES], 0)
+                .with(travelInfo, travelMode, matrix);
+    }
+
+    /* with - Get a copy of this matrix having one of the four values set, the other ones are kept if the size of
+     *        the matrix is the same (the places of the city did not change)
+     *
+     *  @return             : the new matrix
+     *  @travelInfo         : duration or distance
+     *  @travelMode         : driving or walking
+     *  @matrix             : the values by the ids of the places (seconds or meters)
+     */
+    TravelMatrix with(Enums.TravelInfo travelInfo, Enums.TravelMode travelMode, double[][] matrix) {
+        if (matrix.length != size) {
+            return create(travelInfo, travelMode, matrix);
+        }
+
+        int slot = getSlot(travelInfo, travelMode);
+        int unit = travelInfo == Enums.TravelInfo.DISTANCE ? DISTANCE_UNIT : 1;
+        char[] packed = values.clone();
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                long value = Math.round(matrix[from][to] / unit);
+                packed[(from * size + to) * VALUES + slot] = (char) Math.max(0, Math.min(Character.MAX_VALUE, value));
+            }
+        }
+
+        return new TravelMatrix(size, packed, loaded | 1 << slot);
+    }
+
+    /* has - Checks if one of the four values was set
+     *
+     *  @return             : true or false
+     *  @travelInfo         : duration or distance
+     *  @travelMode         : driving or walking
+     */
+    boolean has(Enums.TravelInfo travelInfo, Enums.TravelMode travelMode) {
+        return (loaded & 1 << getSlot(travelInfo, travelMode)) != 0;
+    }
+
+    /* getDuration - Get the duration of the travel between two places
+     *
+     *  @return             : the duration in seconds
+     *  @travelMode         : driving or walking
+     *  @from               : the id of the place where the travel starts
+     *  @to                 : the id of the place where the travel ends
+     */
+    public int getDuration(Enums.TravelMode travelMode, int from, int to) {
+        return values[(from * size + to) * VALUES + (travelMode == Enums.TravelMode.WALKING ? 1 : 0)];
+    }
+
+    /* getDistance - Get the distance of the travel between two places
+     *
+     *  @return             : the distance in meters
+     *  @travelMode         : driving or walking
+     *  @from               : the id of the place where the travel starts
+     *  @to                 : the id of the place where the travel ends
+     */
+    public int getDistance(Enums.TravelMode travelMode, int from, int to) {
+        return values[(from * size + to) * VALUES + (travelMode == Enums.TravelMode.WALKING ? 3 : 2)] * DISTANCE_UNIT;
+    }
+
+    /* getShortestDuration - Get the shortest duration of the travel between two places, driving or walking
+     *
+     *  @return             : the duration in seconds
+     *  @from               : the id of the place where the travel starts
+     *  @to                 : the id of the place where the travel ends
+     */
+    public int getShortestDuration(int from, int to) {
+        int position = (from * size + to) * VALUES;
+        return Math.min(values[position], values[position + 1]);
+    }
+
+    /* getSize - Get the number of places of the matrix
+     *
+     *  @return             : the number of places
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /* getBytes - Get the memory used by the values of the matrix
+     *
+     *  @return             : the number of bytes
+     */
+    public long getBytes() {
+        return (long) values.length * Character.BYTES;
+    }
+
+    /* getSlot - Get the position of one of the four values in the values of a pair of places
+     *
+     *  @return             : the position
+     *  @travelInfo         : duration or distance
+     *  @travelMode         : driving or walking
+     */
+    private static int getSlot(Enums.TravelInfo travelInfo, Enums.TravelMode travelMode) {
+        if (travelMode != Enums.TravelMode.DRIVING && travelMode != Enums.TravelMode.WALKING) {
+            throw new IllegalArgumentException("No travel matrix for " + travelMode);
+        }
+        return (travelInfo == Enums.TravelInfo.DISTANCE ? 2 : 0) + (travelMode == Enums.TravelMode.WALKING ? 1 : 0);
+    }
+}
@@ -79,6 +79,40 @@ public class Enums {
         }
     }
 
+    /* SearchMode - How the planner explores the search tree
+     *              COPY deep copies the context on every recursive call
+     *              IN_PLACE changes a single state per task and rolls it back when backtracking
+     *              EXACT uses dynamic programming over the visited places instead of the tree search (small requests)
+     *              BEAM is the same, but extends only the best partial itineraries (large requests)
+     *              GREEDY builds one itinerary from each place, going each time to the place with the best reward
+     *              NEIGHBORHOOD improves the best greedy itinerary with the neighborhood search until the time limit
+     *              PORTFOLIO races the ones above sharing the best score, until the exact search finishes
+     *
+     */
+    public enum SearchMode {
+        COPY, IN_PLACE, EXACT, BEAM, GREEDY, NEIGHBORHOOD, PORTFOLIO
+    }
+
+    /* PruningBound - How the planner estimates the score that can still be added to a partial solution
+     *                GREEDY is the reward of a greedy path times the number of places left (can prune the best plan)
+     *                ADMISSIBLE never underestimates, so only the branches which can not be better are pruned
+     *
+     */
+    public enum PruningBound {
+        GREEDY, ADMISSIBLE
+    }
+
+    /* PruneReason - Why the planner did not extend a partial solution
+     *               BOUND: the predicted score can not improve the best score
+     *               CLOSED: the place can not be visited at that time
+     *               DOMINATED: the exact search has a label visiting the same places, sooner and with a better score
+     *               BEAM: the beam search keeps only the labels with the highest priority
+     *
+     */
+    public enum PruneReason {
+        BOUND, CLOSED, DOMINATED, BEAM
+    }
+
     public enum TravelInfo {
         DURATION, DISTANCE;
 
@@ -4,10 +4,9 @@ import com.holiholic.planner.constant.Constants;
 import org.json.JSONObject;
 
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /* Interval - Holds information about the place opening hours for a specific day
@@ -18,7 +17,8 @@ public class Interval implements Comparator<Interval> {
     private LocalDateTime end;
     private boolean nonStop;
     private boolean closed;
-    private static Map<String, LocalDateTime> hours = new HashMap<>();
+    // the opening hours are dates of the same week (the week when the class is loaded, starting on Sunday)
+    private static final LocalDate WEEK = LocalDate.now().with(Constants.US_FIELD_DAY_OF_WEEK, 1);
 
     Interval() {
         this.nonStop = true;
@@ -87,6 +87,24 @@ public class Interval implements Comparator<Interval> {
         return start.isBefore(time) && end.isAfter(time);
     }
 
+    /* getOpeningSeconds - Get the interval as seconds from the midnight of the given day
+     *                     The end can be greater than a day if the place closes after midnight
+     *
+     *  @return             : {start, end}, a time t is between the interval if start < t < end
+     *  @dayOfWeek          : the day of the week for the current interval
+     */
+    int[] getOpeningSeconds(int dayOfWeek) {
+        if (isClosed()) {
+            return new int[]{0, 0};
+        }
+        if (isNonStop()) {
+            return new int[]{-1, Integer.MAX_VALUE};
+        }
+
+        assert (start != null && end != null);
+        return new int[]{getSeconds(start, dayOfWeek), getSeconds(end, dayOfWeek)};
+    }
+
     /* toString - Returns a string representation of the current interval
      *
      *  @return             : the string representation
@@ -161,7 +179,8 @@ public class Interval implements Comparator<Interval> {
      *  @second             : the current second
      */
     private static LocalDateTime getDateTimeFromHour(int hourOfDay, int minute) {
-        return LocalDateTime.now().withHour(hourOfDay).withMinute(minute);
+        // drop the seconds of the current time, the hours are always whole minutes
+        return LocalDateTime.now().withHour(hourOfDay).withMinute(minute).withSecond(0).withNano(0);
     }
 
     /* getDateTime - Returns a LocalDateTime using US conventions
@@ -171,17 +190,19 @@ public class Interval implements Comparator<Interval> {
      *  @dayOfWeek          : day of week in US convention (SUN = 1 ... SAT = 7)
      */
     public static LocalDateTime getDateTime(String hour, int dayOfWeek) {
-        String key = hour + "-" + dayOfWeek;
-        if (hours.containsKey(key)) {
-            return hours.get(key);
-        }
-
         int hourOfDay = Integer.parseInt(hour.substring(0, 2));
         int minutes = Integer.parseInt(hour.substring(2));
-        LocalDateTime dateTime = getDateTimeFromHour(hourOfDay, minutes).with(Constants.US_FIELD_DAY_OF_WEEK, dayOfWeek);
+        return WEEK.plusDays(dayOfWeek - 1).atTime(hourOfDay, minutes);
+    }
 
-        hours.put(key, dateTime);
-        return dateTime;
+    /* getDayOfWeek - Returns the day of the week of a time using US conventions
+     *                Same as time.getDayOfWeek().get(Constants.US_FIELD_DAY_OF_WEEK), without the week fields
+     *
+     *  @return             : day of week in US convention (SUN = 1 ... SAT = 7)
+     *  @time               : the time
+     */
+    public static int getDayOfWeek(LocalDateTime time) {
+        return time.getDayOfWeek().getValue() % 7 + 1;
     }
 
     /* getDiff - Returns the difference between two LocalDateTime instance expressed in the given time unit
@@ -196,6 +217,18 @@ public class Interval implements Comparator<Interval> {
         return timeUnit.convert(Duration.between(d1, d2).getSeconds(), TimeUnit.SECONDS);
     }
 
+    /* getSeconds - Returns the seconds passed from the midnight of the given day of the week until the given time
+     *              The time is considered to be in the same week or in the next one (never before the day)
+     *
+     *  @return             : the number of seconds
+     *  @time               : the time
+     *  @dayOfWeek          : day of week in US convention (SUN = 1 ... SAT = 7)
+     */
+    public static int getSeconds(LocalDateTime time, int dayOfWeek) {
+        int days = (getDayOfWeek(time) - dayOfWeek + 7) % 7;
+        return days * Constants.SECONDS_PER_DAY + time.toLocalTime().toSecondOfDay();
+    }
+
     /* serialize - Returns a string representation of the given date time with only hour and minute
      *
      *  @return             : the string representation
@@ -1,49 +1,214 @@
 package com.holiholic.planner.utils;
 
+import com.holiholic.database.api.Query;
+import com.holiholic.database.api.Workload;
+import com.holiholic.planner.constant.Constants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 /* ThreadManager - Handle the threads in order to reuse them instead of creating a new executor for each planner
  *                 Also, it is better to implement a Runnable instead of extending the Thread class
+ *                 The work is split in bulkheads, each one with its own threads and bounded queue, so one kind of
+ *                 work can not starve the others: the plan requests (interactive), saving the plans (persistence)
+ *                 and the admin jobs like updating a city (admin), the searches of the portfolios and the days of the
+ *                 multi day requests (portfolio)
+ *                 When the queue of the plan requests or of the admin jobs is full or all the portfolio threads are
+ *                 busy, the request is rejected at once (the server is overloaded), the plans to save are saved by
+ *                 the request itself
+ *                 The saturation of each pool (queued, active, threads and rejected) is a metric tagged by the pool,
+ *                 including the pools of the database updates
  *
  */
 public class ThreadManager {
-    private static ThreadPoolExecutor executor;
+    // threads running the plan requests (at most PLANNER_PARALLELISM at a time, the others wait in the queue)
+    private static final ThreadPoolExecutor planExecutor = createExecutor("interactive", Constants.PLANNER_PARALLELISM,
+                                                                          Constants.PLANNER_QUEUE_SIZE, false);
+    // threads saving the plans in the background
+    private static final ThreadPoolExecutor persistenceExecutor = createExecutor("persistence",
+                                                                                 Constants.PERSISTENCE_THREADS,
+                                                                                 Constants.PERSISTENCE_QUEUE_SIZE,
+                                                                                 true);
+    // threads running the admin jobs (updating the database of a city, caching the itineraries)
+    private static final ThreadPoolExecutor adminExecutor = createExecutor("admin", Constants.ADMIN_THREADS,
+                                                                           Constants.ADMIN_QUEUE_SIZE, false);
+    // work stealing pool shared by all the planners, the search tasks split themselves while workers are idle
+    private static final ForkJoinPool searchPool = new ForkJoinPool(Constants.SEARCH_PARALLELISM);
+    // threads racing the searches of the portfolio (each search of a request runs on its own thread), also
+    // planning the days of a multi day request at the same time
+    private static final ThreadPoolExecutor portfolioExecutor = createPortfolioExecutor();
+
+    static {
+        for (Workload workload : Workload.values()) {
+            String pool = "database." + workload.name().toLowerCase();
+            Gauge.builder("planner.executor.queued", workload, Query::getQueuedTasks).tag("pool", pool)
+                 .register(Metrics.globalRegistry);
+            Gauge.builder("planner.executor.active", workload, Query::getActiveTasks).tag("pool", pool)
+                 .register(Metrics.globalRegistry);
+            FunctionCounter.builder("planner.executor.rejected", workload, Query::getRejectedTasks).tag("pool", pool)
+                           .register(Metrics.globalRegistry);
+        }
+    }
 
     private ThreadManager() {
-        int numberOfCores = Runtime.getRuntime().availableProcessors();
-        executor = new ThreadPoolExecutor(
-                numberOfCores,
-                numberOfCores,
+    }
+
+    /* createExecutor - Create the executor of a bulkhead and register its metrics
+     *
+     *  @return         : the executor
+     *  @pool           : the name of the bulkhead (the pool tag of the metrics)
+     *  @threads        : the number of threads
+     *  @queueSize      : the number of tasks waiting for a thread
+     *  @callerRuns     : if the caller runs the task when the queue is full, otherwise the task is rejected
+     */
+    private static ThreadPoolExecutor createExecutor(String pool, int threads, int queueSize, boolean callerRuns) {
+        return createExecutor(pool, threads, new ArrayBlockingQueue<>(queueSize), callerRuns);
+    }
+
+    /* createPortfolioExecutor - Create the executor of the portfolio searches and of the days of the multi day
+     *                           requests and register its metrics
+     *                           Its tasks wait for the tasks they submit (a day of a request can race a portfolio),
+     *                           so a task is handed to a free thread at once instead of waiting in a queue behind the
+     *                           tasks waiting for it, it is rejected when all the threads are busy
+     *                           The threads stop when they are idle for a minute
+     *
+     *  @return         : the executor
+     */
+    private static ThreadPoolExecutor createPortfolioExecutor() {
+        ThreadPoolExecutor executor = createExecutor("portfolio", Constants.PORTFOLIO_THREADS,
+                                                     new SynchronousQueue<>(), false);
+        executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /* createExecutor - Same as above, but the queue is given
+     *
+     *  @return         : the executor
+     *  @pool           : the name of the bulkhead (the pool tag of the metrics)
+     *  @threads        : the number of threads
+     *  @queue          : the tasks waiting for a thread
+     *  @callerRuns     : if the caller runs the task when the queue is full, otherwise the task is rejected
+     */
+    private static ThreadPoolExecutor createExecutor(String pool, int threads, BlockingQueue<Runnable> queue,
+                                                     boolean callerRuns) {
+        Counter rejections = Metrics.counter("planner.executor.rejected", "pool", pool);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
                 0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<>());
-        // need a rejection policy when the waiting queue is way to big!
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+                queue,
+                (task, rejectedBy) -> {
+                    rejections.increment();
+                    if (!callerRuns) {
+                        throw new RejectedExecutionException("The " + pool + " pool is overloaded");
+                    }
+                    if (!rejectedBy.isShutdown()) {
+                        task.run();
+                    }
+                });
+
+        Gauge.builder("planner.executor.queued", executor, e -> e.getQueue().size()).tag("pool", pool)
+             .register(Metrics.globalRegistry);
+        Gauge.builder("planner.executor.active", executor, ThreadPoolExecutor::getActiveCount).tag("pool", pool)
+             .register(Metrics.globalRegistry);
+        Gauge.builder("planner.executor.threads", executor, ThreadPoolExecutor::getMaximumPoolSize).tag("pool", pool)
+             .register(Metrics.globalRegistry);
+        return executor;
     }
 
-    /* getInstance - Get the instance for the thread manager
+    /* submitPlan - Run a plan request on the planner executor (interactive)
+     *              Throws RejectedExecutionException if too many requests are waiting (see getRetryAfter)
      *
-     *  @return       : the thread manager instance
+     *  @return         : the result of the request
+     *  @request        : the request
      */
-    public static ThreadManager getInstance() {
-        return new ThreadManager();
+    public static <T> Future<T> submitPlan(Callable<T> request) {
+        return planExecutor.submit(request);
     }
 
-    /* invokeAll - Execute a list of tasks and wait for their execution
+    /* submitAdmin - Run an admin job on the admin executor
+     *               Throws RejectedExecutionException if too many jobs are waiting
+     *
+     *  @return         : the result of the job
+     *  @job            : the job
+     */
+    public static <T> Future<T> submitAdmin(Callable<T> job) {
+        return adminExecutor.submit(job);
+    }
+
+    /* persist - Save something in the background (persistence), the caller saves it if the queue is full
      *
      *  @return         : void
+     *  @task           : saves the data
+     */
+    public static void persist(Runnable task) {
+        persistenceExecutor.execute(task);
+    }
+
+    /* getRetryAfter - Estimate when a rejected request can be sent again, the time to plan the requests waiting
+     *
+     *  @return         : the time (seconds)
+     */
+    public static long getRetryAfter() {
+        long rounds = planExecutor.getQueue().size() / Constants.PLANNER_PARALLELISM + 1;
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(rounds * Constants.PLANNER_TIME_LIMIT_MS));
+    }
+
+    /* getSearchPool - Get the fork/join pool used by the planners
+     *
+     *  @return         : the pool
+     */
+    public static ForkJoinPool getSearchPool() {
+        return searchPool;
+    }
+
+    /* getPortfolioExecutor - Get the executor where the searches of the portfolio race and the days of a multi
+     *                        day request are planned
+     *                        It throws RejectedExecutionException when all its threads are busy
+     *
+     *  @return         : the executor
+     */
+    public static ExecutorService getPortfolioExecutor() {
+        return portfolioExecutor;
+    }
+
+    /* forkAll - Execute a list of fork/join tasks in the given pool and wait for their execution
+     *           The tasks which are not finished in the given time are stopped by the given action (cancelling a
+     *           fork/join task does not stop it once it runs, so the tasks must check themselves if they were
+     *           stopped), then the method waits for them, so no task is running when it returns
+     *
+     *  @return         : void
+     *  @pool           : the pool where to execute the tasks
      *  @tasks          : tasks to execute
      *  @limit          : duration limit
      *  @timeUnit       : time unit for duration limit
+     *  @stop           : makes the tasks return as soon as possible
      */
-    public void invokeAll(List<? extends Callable<Boolean>> tasks, int limit, TimeUnit timeUnit) {
+    public static void forkAll(ForkJoinPool pool, List<? extends ForkJoinTask<Boolean>> tasks, long limit,
+                               TimeUnit timeUnit, Runnable stop) {
+        long deadline = System.nanoTime() + timeUnit.toNanos(limit);
+
+        for (ForkJoinTask<Boolean> task : tasks) {
+            pool.execute(task);
+        }
+
         try {
-            executor.invokeAll(tasks, limit, timeUnit);
+            for (ForkJoinTask<Boolean> task : tasks) {
+                task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            stop.run();
         } catch (Exception e) {
             e.printStackTrace();
         }
+
+        for (ForkJoinTask<Boolean> task : tasks) {
+            task.quietlyJoin();
+        }
     }
 }
@@ -8,19 +8,53 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 /* TimeFrame - Holds information about the place opening hours
+ *             The intervals are compiled when the time frame is created into the open days (a bitmask) and the
+ *             opening seconds of each day, so the checks are integer comparisons without LocalDateTime arithmetic
  *
  */
 public class TimeFrame {
+    private static final List<Integer> ALL_DAYS = Collections.unmodifiableList(Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+
     private Map<Integer, Interval> intervals;
     private boolean nonStop = false;
+    // bit dayOfWeek is set if the place is open in that day
+    private int openDaysMask;
+    private List<Integer> openDays;
+    // {open, close} as seconds from the midnight of the day at position dayOfWeek * 2 (see getOpeningSeconds)
+    private final int[] openingSeconds = new int[16];
 
     // Create a non stop place
     private TimeFrame() {
         this.nonStop = true;
+        compile();
     }
 
     private TimeFrame(Map<Integer, Interval> intervals) {
         this.intervals = intervals;
+        compile();
+    }
+
+    /* compile - Compute the open days and the opening seconds of each day from the intervals
+     *
+     *  @return             : void
+     */
+    private void compile() {
+        List<Integer> days = new ArrayList<>();
+        openDaysMask = 0;
+
+        for (int dayOfWeek = 1; dayOfWeek <= 7; dayOfWeek++) {
+            int[] seconds = nonStop ? new int[]{-1, Integer.MAX_VALUE}
+                                    : intervals.get(dayOfWeek).getOpeningSeconds(dayOfWeek);
+            openingSeconds[dayOfWeek * 2] = seconds[0];
+            openingSeconds[dayOfWeek * 2 + 1] = seconds[1];
+
+            if (nonStop || !intervals.get(dayOfWeek).isClosed()) {
+                openDaysMask |= 1 << dayOfWeek;
+                days.add(dayOfWeek);
+            }
+        }
+
+        openDays = nonStop ? ALL_DAYS : Collections.unmodifiableList(days);
     }
 
     /* setClosedAllDays - Makes the current opening period closed for all seven days
@@ -34,6 +68,8 @@ public class TimeFrame {
             closedInterval.setClosed();
             this.intervals.put(dayOfWeek, closedInterval);
         }
+        this.nonStop = false;
+        compile();
     }
 
     /* isClosed - Checks if the place is closed in the given day of the week
@@ -42,7 +78,7 @@ public class TimeFrame {
      *  @dayOfWeek          : the LocalDateTime day of the week when to check
      */
     public boolean isClosed(int dayOfWeek) {
-        return intervals.get(dayOfWeek).isClosed();
+        return (openDaysMask & 1 << dayOfWeek) == 0;
     }
 
     /* canVisit - Checks if the place can be visited at the given time
@@ -55,26 +91,46 @@ public class TimeFrame {
             return true;
         }
 
-        int dayOfWeek = time.getDayOfWeek().get(Constants.US_FIELD_DAY_OF_WEEK);
-        return !intervals.get(dayOfWeek).isClosed() && intervals.get(dayOfWeek).isBetween(time);
+        return canVisit(Interval.getDayOfWeek(time), time.toLocalTime().toSecondOfDay());
     }
 
-    /* getOpenDays - Get a list of open days
+    /* canVisit - Same as above, but the time is given as the day of the week and the second of that day
+     *            The callers checking many places at the same time convert the time only once
      *
-     *  @return             : a list of indexes for each open day
+     *  @return             : true / false
+     *  @dayOfWeek          : day of week
+     *  @second             : seconds from the midnight of that day
      */
-    public List<Integer> getOpenDays() {
-        List<Integer> openDays = new ArrayList<>();
+    public boolean canVisit(int dayOfWeek, int second) {
+        return openingSeconds[dayOfWeek * 2] < second && second < openingSeconds[dayOfWeek * 2 + 1];
+    }
 
-        for (int dayOfWeek = 1; dayOfWeek <= 7; dayOfWeek++) {
-            if (isNonStop() || !isClosed(dayOfWeek)) {
-                openDays.add(dayOfWeek);
-            }
-        }
+    /* getOpeningSeconds - Get the opening interval for a day as seconds from the midnight of that day
+     *                     Used by the planner which keeps the time as an integer number of seconds
+     *
+     *  @return             : {open, close}, the place can be visited at second t of the day if open < t < close
+     *  @dayOfWeek          : day of week
+     */
+    public int[] getOpeningSeconds(int dayOfWeek) {
+        return new int[]{openingSeconds[dayOfWeek * 2], openingSeconds[dayOfWeek * 2 + 1]};
+    }
 
+    /* getOpenDays - Get a list of open days (computed once, it can not be changed)
+     *
+     *  @return             : a list of indexes for each open day
+     */
+    public List<Integer> getOpenDays() {
         return openDays;
     }
 
+    /* getOpenDaysMask - Get the open days as a bitmask
+     *
+     *  @return             : the bitmask, bit dayOfWeek is set for each open day
+     */
+    public int getOpenDaysMask() {
+        return openDaysMask;
+    }
+
     /* canVisit - Check if the current period (visiting interval) can be visited in the given period
      *            For example each place has an opening period which consist of daily visiting Interval
      *            The timeFrame parameter can be the day(s) the user wants to visit
@@ -88,19 +144,22 @@ public class TimeFrame {
             return true;
         }
 
-        Interval placeInterval, userInterval;
+        int days = openDaysMask & timeFrame.openDaysMask;
 
-        for (int dayOfWeek : timeFrame.getOpenDays()) {
-            if (isClosed(dayOfWeek)) {
+        for (int dayOfWeek = 1; dayOfWeek <= 7; dayOfWeek++) {
+            if ((days & 1 << dayOfWeek) == 0) {
                 continue;
             }
 
-            placeInterval = getInterval(dayOfWeek);
-            userInterval = timeFrame.getInterval(dayOfWeek);
+            int placeStart = openingSeconds[dayOfWeek * 2];
+            int placeEnd = openingSeconds[dayOfWeek * 2 + 1];
+            int userStart = timeFrame.openingSeconds[dayOfWeek * 2];
+            int userEnd = timeFrame.openingSeconds[dayOfWeek * 2 + 1];
 
-            if (placeInterval.isBetween(userInterval.getStart()) ||
-                placeInterval.isBetween(userInterval.getEnd()) ||
-                userInterval.isBetween(placeInterval.getStart())) {
+            // the place is open at the start or at the end of the user interval or opens during it
+            if ((placeStart < userStart && userStart < placeEnd) ||
+                (placeStart < userEnd && userEnd < placeEnd) ||
+                (userStart < placeStart && placeStart < userEnd)) {
                 return true;
             }
         }
@@ -0,0 +1,232 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.places.api.PlaceCategory;
+import com.holiholic.planner.models.Place;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+import com.holiholic.planner.utils.GeoPosition;
+import com.holiholic.planner.utils.TimeFrame;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/* PlannerTest - Checks that the in place search finds the same itineraries as the search copying its context
+ *               Both searches run on small synthetic cities until they finish (no time limit is reached), in a
+ *               single thread, so the itineraries, their order and the best score must be exactly the same
+ *
+ */
+public class PlannerTest {
+    private static final Logger LOGGER = Logger.getLogger(Planner.class.getName());
+    private static final String[] OPEN_HOURS = {"0800", "0900", "1000", "1100"};
+    private static final String[] CLOSE_HOURS = {"1500", "1700", "1800", "2000"};
+    private static final String[] FIXED_HOURS = {"1030", "1400", "1600"};
+    // the user plans for Monday
+    private static final int PLANNING_DAY = 2;
+    private static final int CITY_SIZE = 30;
+    private static final long TIME_LIMIT_MS = 60000;
+    private static ForkJoinPool searchPool;
+
+    @BeforeClass
+    public static void setUp() {
+        // the tasks run one after another, so the itineraries with the same score are found in the same order
+        searchPool = new ForkJoinPool(1);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        searchPool.shutdown();
+    }
+
+    @Test
+    public void inPlaceMatchesCopyDriving() {
+        checkSameItineraries(Enums.TravelMode.DRIVING, Enums.PruningBound.GREEDY, false);
+    }
+
+    @Test
+    public void inPlaceMatchesCopyWalking() {
+        checkSameItineraries(Enums.TravelMode.WALKING, Enums.PruningBound.GREEDY, false);
+    }
+
+    @Test
+    public void inPlaceMatchesCopyWithMeals() {
+        checkSameItineraries(Enums.TravelMode.DRIVING, Enums.PruningBound.GREEDY, true);
+    }
+
+    @Test
+    public void inPlaceMatchesCopyAdmissibleBound() {
+        checkSameItineraries(Enums.TravelMode.DRIVING, Enums.PruningBound.ADMISSIBLE, false);
+    }
+
+    /* checkSameItineraries - Plan the same requests with both search modes and compare the results
+     *                        The requests have 4 to 7 places, with none, one or two fixed places
+     *
+     *  @return             : void
+     *  @travelMode         : driving or walking
+     *  @pruningBound       : the bound used by both searches
+     *  @meals              : true if the user wants to have lunch
+     */
+    private static void checkSameItineraries(Enums.TravelMode travelMode, Enums.PruningBound pruningBound,
+                                             boolean meals) {
+        for (long seed = 1; seed <= 3; seed++) {
+            City city = createCity(CITY_SIZE, seed);
+            for (int count = 4; count <= 7; count++) {
+                for (int fixedCount = 0; fixedCount <= 2; fixedCount++) {
+                    String request = "seed " + seed + ", " + count + " places, " + fixedCount + " fixed";
+                    long requestSeed = seed * 31 + count;
+
+                    Planner copy = createPlanner(city, travelMode, pruningBound, meals, Enums.SearchMode.COPY);
+                    List<List<Place>> expected = copy.getPlan(createRequest(city, count, fixedCount, requestSeed));
+                    Planner inPlace = createPlanner(city, travelMode, pruningBound, meals, Enums.SearchMode.IN_PLACE);
+                    List<List<Place>> actual = inPlace.getPlan(createRequest(city, count, fixedCount, requestSeed));
+
+                    assertFalse(request, copy.isTimedOut() || inPlace.isTimedOut());
+                    assertEquals(request, copy.getBestScore(), inPlace.getBestScore(), 0);
+                    assertEquals(request, Planner.serialize(expected).toString(),
+                                 Planner.serialize(actual).toString());
+                }
+            }
+        }
+    }
+
+    /* createPlanner - Create a planner for a user visiting the city on Monday from 9 to 20
+     *
+     *  @return             : the planner
+     *  @city               : the city
+     *  @travelMode         : driving or walking
+     *  @pruningBound       : the bound of the search
+     *  @meals              : true if the user wants to have lunch
+     *  @searchMode         : IN_PLACE or COPY
+     */
+    private static Planner createPlanner(City city, Enums.TravelMode travelMode, Enums.PruningBound pruningBound,
+                                         boolean meals, Enums.SearchMode searchMode) {
+        Planner planner = new Planner(city, createTimeFrame("0900", PLANNING_DAY, "2000", PLANNING_DAY), travelMode);
+        // the planner logs every new solution
+        LOGGER.setLevel(Level.WARNING);
+        planner.setHeuristicValue(0.5);
+        planner.setStart(Place.deserializeStart(new JSONObject().put("name", "start")
+                                                                .put("latitude", 44.42)
+                                                                .put("longitude", 26.08)));
+        planner.setLunch(meals);
+        planner.setPruningBound(pruningBound);
+        planner.setSearchMode(searchMode);
+        // only the in place search dives greedily before the tasks, which changes the order of the itineraries
+        planner.setWarmStart(false);
+        // the alternatives kept for their diversity depend on the order in which the itineraries are found, so
+        // only the itineraries having the same places are compared
+        planner.setMinDistance(0);
+        planner.setSearchPool(searchPool);
+        planner.setTimeLimit(TIME_LIMIT_MS);
+        return planner;
+    }
+
+    /* createCity - Create a city with random places around the same center, the same seed gives the same city
+     *              A quarter of the places are non stop, a quarter are restaurants
+     *
+     *  @return             : the city
+     *  @size               : the number of places
+     *  @seed               : the seed of the random generator
+     */
+    private static City createCity(int size, long seed) {
+        Random random = new Random(seed);
+        City city = new City("test-" + size + "-" + seed);
+        Map<Integer, Place> places = new HashMap<>();
+
+        for (int id = 0; id < size; id++) {
+            GeoPosition location = new GeoPosition(44.40 + random.nextDouble() * 0.05,
+                                                   26.05 + random.nextDouble() * 0.07);
+            TimeFrame timeFrame;
+            if (random.nextInt(4) == 0) {
+                timeFrame = createTimeFrame("0000", 0, null, 0);
+            } else {
+                timeFrame = createTimeFrame(OPEN_HOURS[random.nextInt(OPEN_HOURS.length)], PLANNING_DAY,
+                                            CLOSE_HOURS[random.nextInt(CLOSE_HOURS.length)], PLANNING_DAY);
+            }
+            boolean restaurant = random.nextInt(4) == 0;
+            PlaceCategory category = restaurant ? new PlaceCategory("Restaurant", "Restaurants")
+                                                : new PlaceCategory("Museum", "Attractions");
+            double rating = 3 + random.nextInt(21) / 10.0;
+            int durationVisit = (30 + random.nextInt(90)) * 60;
+
+            places.put(id, new Place(id, "Place " + id, "", "", rating, category, durationVisit, location, timeFrame));
+        }
+        city.setPlaces(places);
+
+        double[][] distanceDriving = new double[size][size];
+        double[][] distanceWalking = new double[size][size];
+        double[][] durationDriving = new double[size][size];
+        double[][] durationWalking = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i == j) {
+                    continue;
+                }
+
+                double meters = GeoPosition.distanceBetweenGeoCoordinates(places.get(i).location,
+                                                                          places.get(j).location);
+                distanceDriving[i][j] = meters * 1.3;
+                distanceWalking[i][j] = meters * 1.1;
+                // 20 km/h plus two minutes for parking, 5 km/h walking
+                durationDriving[i][j] = distanceDriving[i][j] / (20 / 3.6) + 120;
+                durationWalking[i][j] = distanceWalking[i][j] / (5 / 3.6);
+            }
+        }
+        city.setDistance(Enums.TravelMode.DRIVING, distanceDriving);
+        city.setDistance(Enums.TravelMode.WALKING, distanceWalking);
+        city.setDuration(Enums.TravelMode.DRIVING, durationDriving);
+        city.setDuration(Enums.TravelMode.WALKING, durationWalking);
+
+        return city;
+    }
+
+    /* createTimeFrame - Create a time frame having one period, in the format used by the database
+     *
+     *  @return             : the time frame
+     *  @open               : the opening hour
+     *  @openDay            : the opening day
+     *  @close              : the closing hour (null for non stop)
+     *  @closeDay           : the closing day
+     */
+    private static TimeFrame createTimeFrame(String open, int openDay, String close, int closeDay) {
+        JSONObject period = new JSONObject().put("open", new JSONObject().put("time", open).put("day", openDay));
+        if (close != null) {
+            period.put("close", new JSONObject().put("time", close).put("day", closeDay));
+        }
+        return TimeFrame.deserialize(new JSONArray().put(period));
+    }
+
+    /* createRequest - Choose the places of a request, each call returns new copies of the places
+     *
+     *  @return             : the places the user wants to visit
+     *  @city               : the city
+     *  @count              : the number of places
+     *  @fixedCount         : how many of them have a fixed time
+     *  @seed               : the seed of the random generator
+     */
+    private static List<Place> createRequest(City city, int count, int fixedCount, long seed) {
+        Random random = new Random(seed);
+        List<Integer> ids = new ArrayList<>(new TreeSet<>(city.getPlaces().keySet()));
+        List<Place> places = new ArrayList<>();
+
+        Collections.shuffle(ids, random);
+        for (int i = 0; i < count; i++) {
+            Place place = city.getPlaces().get(ids.get(i)).copy();
+            place.visitInside = random.nextBoolean();
+            if (i < fixedCount) {
+                place.fixedAt = FIXED_HOURS[i];
+            }
+            places.add(place);
+        }
+
+        return places;
+    }
+}
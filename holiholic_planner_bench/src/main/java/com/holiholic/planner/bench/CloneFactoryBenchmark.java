@@ -0,0 +1,52 @@
+package com.holiholic.planner.bench;
+
+import com.holiholic.planner.models.Place;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.CloneFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/* CloneFactoryBenchmark - JMH benchmark of the deep copies made by CloneFactory for the tasks of the legacy search
+ *                         Run with -prof gc, the allocation rate is what matters here
+ *                         java -jar target/benchmarks.jar CloneFactoryBenchmark -prof gc
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CloneFactoryBenchmark {
+    @Param({"8", "12", "16", "20", "24", "30"})
+    public int places;
+
+    private List<Place> list;
+    private Set<Place> set;
+    private PriorityQueue<Place> queue;
+
+    @Setup(Level.Trial)
+    public void createPlaces() {
+        City city = SyntheticCity.create(Math.max(40, places * 2), 1);
+        list = SyntheticCity.createRequest(city, places, 0, 1);
+        set = new HashSet<>(list);
+        queue = new PriorityQueue<>(list);
+    }
+
+    @Benchmark
+    public List<Place> cloneList() {
+        return CloneFactory.clone(list);
+    }
+
+    @Benchmark
+    public Set<Place> cloneSet() {
+        return CloneFactory.clone(set);
+    }
+
+    @Benchmark
+    public PriorityQueue<Place> cloneQueue() {
+        return CloneFactory.clone(queue);
+    }
+}
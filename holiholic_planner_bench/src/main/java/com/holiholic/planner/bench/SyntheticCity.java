@@ -0,0 +1,247 @@
+package com.holiholic.planner.bench;
+
+import com.holiholic.places.api.PlaceCategory;
+import com.holiholic.planner.models.Place;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+import com.holiholic.planner.utils.GeoPosition;
+import com.holiholic.planner.utils.TimeFrame;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/* SyntheticCity - Deterministic generator of cities and requests used by the benchmarks
+ *                 The same size and seed always produce the same places, opening hours and matrices,
+ *                 so the results of different runs (or different versions of the planner) can be compared
+ *                 The opening hours, the share of restaurants and the kind of matrices can be chosen
+ *
+ */
+public class SyntheticCity {
+    private static final String[] OPEN_HOURS = {"0800", "0900", "1000", "1100"};
+    private static final String[] CLOSE_HOURS = {"1500", "1700", "1800", "2000"};
+    private static final String[] NARROW_OPEN_HOURS = {"0900", "1100", "1300", "1500", "1700"};
+    // a power of two, so drawing a share takes a single value of the generator
+    private static final int SHARE_PRECISION = 1 << 20;
+    public static final double DEFAULT_RESTAURANTS = 0.25;
+    private static final String[] FIXED_HOURS = {"1030", "1400", "1600"};
+    // the user plans for Monday
+    public static final int PLANNING_DAY = 2;
+
+    /* OpeningHours - The opening hours of the places
+     *                MIXED     : a quarter non stop, the others open the same interval in most days
+     *                NON_STOP  : all the places are non stop
+     *                REGULAR   : no place is non stop
+     *                NARROW    : all the places are open only 2 hours, so most itineraries wait or drop places
+     *                            (the fixed times of a request are often outside the opening hours)
+     *
+     */
+    public enum OpeningHours {
+        MIXED, NON_STOP, REGULAR, NARROW
+    }
+
+    /* Matrix - How the distances between the places are derived from their positions
+     *          GEOGRAPHIC  : the geographical distance (the same both ways)
+     *          GRID        : the streets are a grid, the distance is the sum of the differences of the coordinates
+     *          ONE_WAY     : the geographical distance, but driving back (to a place with a lower id) is longer
+     *
+     */
+    public enum Matrix {
+        GEOGRAPHIC, GRID, ONE_WAY
+    }
+
+    private SyntheticCity() {
+
+    }
+
+    /* create - Create a city with random places around the same center
+     *          A quarter of the places are non stop, a quarter are restaurants
+     *
+     *  @return             : the city
+     *  @size               : the number of places
+     *  @seed               : the seed of the random generator
+     */
+    public static City create(int size, long seed) {
+        return create(size, seed, OpeningHours.MIXED, DEFAULT_RESTAURANTS, Matrix.GEOGRAPHIC);
+    }
+
+    /* create - Create a city with random places around the same center
+     *
+     *  @return             : the city
+     *  @size               : the number of places
+     *  @seed               : the seed of the random generator
+     *  @openingHours       : the opening hours of the places
+     *  @restaurants        : the share of restaurants (0 .. 1), the other places are attractions
+     *  @matrix             : how the distances are derived from the positions
+     */
+    public static City create(int size, long seed, OpeningHours openingHours, double restaurants, Matrix matrix) {
+        Random random = new Random(seed);
+        City city = new City("synthetic-" + size + "-" + seed);
+        Map<Integer, Place> places = new HashMap<>();
+
+        for (int id = 0; id < size; id++) {
+            GeoPosition location = new GeoPosition(44.40 + random.nextDouble() * 0.05,
+                                                   26.05 + random.nextDouble() * 0.07);
+            TimeFrame timeFrame = createTimeFrame(random, openingHours);
+            boolean restaurant = random.nextInt(SHARE_PRECISION) < restaurants * SHARE_PRECISION;
+            PlaceCategory category = restaurant ? new PlaceCategory("Restaurant", "Restaurants")
+                                                : new PlaceCategory("Museum", "Attractions");
+            double rating = 3 + random.nextInt(21) / 10.0;
+            int durationVisit = (30 + random.nextInt(90)) * 60;
+
+            places.put(id, new Place(id, "Place " + id, "", "", rating, category, durationVisit, location, timeFrame));
+        }
+        city.setPlaces(places);
+        setMatrices(city, matrix);
+
+        return city;
+    }
+
+    /* createTimeFrame - Create random opening hours, non stop or the same interval in the open days
+     *
+     *  @return             : the time frame
+     *  @random             : the random generator
+     *  @openingHours       : the opening hours of the places
+     */
+    private static TimeFrame createTimeFrame(Random random, OpeningHours openingHours) {
+        JSONArray timeFrame = new JSONArray();
+
+        if (openingHours == OpeningHours.NON_STOP || (openingHours == OpeningHours.MIXED && random.nextInt(4) == 0)) {
+            return TimeFrame.deserialize(timeFrame.put(createPeriod("0000", 0, null, 0)));
+        }
+
+        String open;
+        String close;
+        if (openingHours == OpeningHours.NARROW) {
+            open = NARROW_OPEN_HOURS[random.nextInt(NARROW_OPEN_HOURS.length)];
+            close = String.format("%02d%s", Integer.parseInt(open.substring(0, 2)) + 2, open.substring(2));
+        } else {
+            open = OPEN_HOURS[random.nextInt(OPEN_HOURS.length)];
+            close = CLOSE_HOURS[random.nextInt(CLOSE_HOURS.length)];
+        }
+        for (int day = 1; day <= 7; day++) {
+            // closed in some days, but always open when the user plans
+            if (day != PLANNING_DAY && random.nextInt(7) == 0) {
+                continue;
+            }
+            timeFrame.put(createPeriod(open, day, close, day));
+        }
+
+        return TimeFrame.deserialize(timeFrame);
+    }
+
+    /* createPeriod - Create a period in the format used by the database
+     *
+     *  @return             : the period
+     *  @open               : the opening hour
+     *  @openDay            : the opening day
+     *  @close              : the closing hour (null for non stop)
+     *  @closeDay           : the closing day
+     */
+    private static JSONObject createPeriod(String open, int openDay, String close, int closeDay) {
+        JSONObject period = new JSONObject();
+        period.put("open", new JSONObject().put("time", open).put("day", openDay));
+        if (close != null) {
+            period.put("close", new JSONObject().put("time", close).put("day", closeDay));
+        }
+        return period;
+    }
+
+    /* setMatrices - Set the distance and duration matrices derived from the positions of the places
+     *
+     *  @return             : void
+     *  @city               : the city
+     *  @matrix             : how the distances are derived from the positions
+     */
+    private static void setMatrices(City city, Matrix matrix) {
+        int size = city.getPlaces().size();
+        double[][] distanceDriving = new double[size][size];
+        double[][] distanceWalking = new double[size][size];
+        double[][] durationDriving = new double[size][size];
+        double[][] durationWalking = new double[size][size];
+
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i == j) {
+                    continue;
+                }
+
+                double meters = getMeters(city.getPlaces().get(i).location, city.getPlaces().get(j).location, matrix);
+                distanceDriving[i][j] = meters * (matrix == Matrix.ONE_WAY && j < i ? 1.8 : 1.3);
+                distanceWalking[i][j] = meters * 1.1;
+                // 20 km/h plus two minutes for parking, 5 km/h walking
+                durationDriving[i][j] = distanceDriving[i][j] / (20 / 3.6) + 120;
+                durationWalking[i][j] = distanceWalking[i][j] / (5 / 3.6);
+            }
+        }
+
+        city.setDistance(Enums.TravelMode.DRIVING, distanceDriving);
+        city.setDistance(Enums.TravelMode.WALKING, distanceWalking);
+        city.setDuration(Enums.TravelMode.DRIVING, durationDriving);
+        city.setDuration(Enums.TravelMode.WALKING, durationWalking);
+    }
+
+    /* getMeters - Get the distance between two positions
+     *
+     *  @return             : the distance in meters
+     *  @from               : the first position
+     *  @to                 : the second position
+     *  @matrix             : how the distances are derived from the positions
+     */
+    private static double getMeters(GeoPosition from, GeoPosition to, Matrix matrix) {
+        if (matrix != Matrix.GRID) {
+            return GeoPosition.distanceBetweenGeoCoordinates(from, to);
+        }
+
+        // walk along the meridian, then along the parallel
+        GeoPosition corner = new GeoPosition(to.latitude, from.longitude);
+        return GeoPosition.distanceBetweenGeoCoordinates(from, corner)
+               + GeoPosition.distanceBetweenGeoCoordinates(corner, to);
+    }
+
+    /* createRequest - Choose the places of a request, each call returns new copies of the places
+     *
+     *  @return             : the places the user wants to visit
+     *  @city               : the city
+     *  @count              : the number of places
+     *  @fixedCount         : how many of them have a fixed time
+     *  @seed               : the seed of the random generator
+     */
+    public static List<Place> createRequest(City city, int count, int fixedCount, long seed) {
+        Random random = new Random(seed);
+        List<Integer> ids = new ArrayList<>(new TreeSet<>(city.getPlaces().keySet()));
+        List<Place> places = new ArrayList<>();
+
+        Collections.shuffle(ids, random);
+        for (int i = 0; i < count; i++) {
+            Place place = city.getPlaces().get(ids.get(i)).copy();
+            place.visitInside = random.nextBoolean();
+            if (i < fixedCount && i < FIXED_HOURS.length) {
+                place.fixedAt = FIXED_HOURS[i];
+            }
+            places.add(place);
+        }
+
+        return places;
+    }
+
+    /* createTimeFrame - Create the user time frame for the planning day
+     *
+     *  @return             : the time frame
+     *  @start              : the start hour (for example "0900")
+     *  @end                : the end hour
+     */
+    public static TimeFrame createTimeFrame(String start, String end) {
+        return TimeFrame.deserialize(new JSONArray().put(createPeriod(start, PLANNING_DAY, end, PLANNING_DAY)));
+    }
+
+    /* createStart - Create the start place in the center of the city
+     *
+     *  @return             : the start place
+     */
+    public static Place createStart() {
+        return Place.deserializeStart(new JSONObject().put("name", "start")
+                                                      .put("latitude", 44.42)
+                                                      .put("longitude", 26.08));
+    }
+}
@@ -0,0 +1,77 @@
+package com.holiholic.planner.bench;
+
+import com.holiholic.planner.utils.Interval;
+import com.holiholic.planner.utils.TimeFrame;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/* TimeFrameBenchmark - JMH benchmark of TimeFrame.canVisit, the check done for each neighbor at each node
+ *                      Each operation checks all the places of a synthetic city at each quarter of the planning day,
+ *                      with the time as a LocalDateTime and as the day of the week and the second of the day
+ *                      java -jar target/benchmarks.jar TimeFrameBenchmark -prof gc
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeFrameBenchmark {
+    private static final int QUARTERS = 24 * 4;
+
+    @Param({"8", "16", "30"})
+    public int places;
+
+    @Param({"MIXED", "NON_STOP", "NARROW"})
+    public SyntheticCity.OpeningHours openingHours;
+
+    private TimeFrame[] timeFrames;
+    private LocalDateTime[] times;
+    private int[] seconds;
+
+    @Setup(Level.Trial)
+    public void createTimeFrames() {
+        timeFrames = SyntheticCity.create(places, 1, openingHours, SyntheticCity.DEFAULT_RESTAURANTS,
+                                          SyntheticCity.Matrix.GEOGRAPHIC)
+                                  .getPlaces().values().stream().map(place -> place.timeFrame)
+                                  .toArray(TimeFrame[]::new);
+
+        LocalDateTime midnight = Interval.getDateTime("0000", SyntheticCity.PLANNING_DAY);
+        times = new LocalDateTime[QUARTERS];
+        seconds = new int[QUARTERS];
+        for (int i = 0; i < QUARTERS; i++) {
+            times[i] = midnight.plusMinutes(i * 15);
+            seconds[i] = times[i].toLocalTime().toSecondOfDay();
+        }
+    }
+
+    @Benchmark
+    public int canVisitDateTime() {
+        int count = 0;
+        for (LocalDateTime time : times) {
+            for (TimeFrame timeFrame : timeFrames) {
+                if (timeFrame.canVisit(time)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int canVisitSeconds() {
+        int count = 0;
+        int dayOfWeek = Interval.getDayOfWeek(times[0]);
+        for (int second : seconds) {
+            for (TimeFrame timeFrame : timeFrames) {
+                if (timeFrame.isNonStop() || timeFrame.canVisit(dayOfWeek, second)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
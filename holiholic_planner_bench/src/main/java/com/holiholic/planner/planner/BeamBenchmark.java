@@ -0,0 +1,85 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.bench.SyntheticCity;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+
+/* BeamBenchmark - Compare the beam search with the exact search on the same synthetic requests
+ *                 For each request size and beam width it reports the total score and time of the beam search,
+ *                 the slowest request and how often its best score is lower than the exact one
+ *                 The exact search is run only up to exactMaxPlaces, above that only the beam search is timed
+ *                 Arguments (all optional): requests maxPlaces exactMaxPlaces widths (comma separated)
+ *
+ */
+public class BeamBenchmark {
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int maxPlaces = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int exactMaxPlaces = args.length > 2 ? Integer.parseInt(args[2]) : 14;
+        String[] widths = (args.length > 3 ? args[3] : "64,256,1024").split(",");
+
+        System.out.printf("%6s %8s %12s %12s %12s %8s%n", "places", "width", "score", "time (ms)", "max (ms)", "worse");
+        for (int places = 8; places <= maxPlaces; places += 2) {
+            boolean exact = places <= exactMaxPlaces;
+            double[] exactScores = new double[requests];
+
+            if (exact) {
+                double score = 0;
+                double time = 0;
+                double maxTime = 0;
+
+                for (int seed = 1; seed <= requests; seed++) {
+                    long start = System.nanoTime();
+                    Planner planner = plan(places, seed, Enums.SearchMode.EXACT, 0);
+                    double duration = (System.nanoTime() - start) / 1e6;
+
+                    exactScores[seed - 1] = planner.getBestScore();
+                    score += Math.max(0, planner.getBestScore());
+                    time += duration;
+                    maxTime = Math.max(maxTime, duration);
+                }
+                System.out.printf("%6d %8s %12.2f %12.1f %12.1f %8s%n", places, "exact", score, time, maxTime, "-");
+            }
+
+            for (String width : widths) {
+                double score = 0;
+                double time = 0;
+                double maxTime = 0;
+                int worse = 0;
+
+                for (int seed = 1; seed <= requests; seed++) {
+                    long start = System.nanoTime();
+                    Planner planner = plan(places, seed, Enums.SearchMode.BEAM, Integer.parseInt(width));
+                    double duration = (System.nanoTime() - start) / 1e6;
+
+                    score += Math.max(0, planner.getBestScore());
+                    time += duration;
+                    maxTime = Math.max(maxTime, duration);
+                    if (exact && planner.getBestScore() < exactScores[seed - 1]) {
+                        worse++;
+                    }
+                }
+                System.out.printf("%6d %8s %12.2f %12.1f %12.1f %8s%n", places, width, score, time, maxTime,
+                                  exact ? String.valueOf(worse) : "-");
+            }
+        }
+    }
+
+    /* plan - Plan a synthetic request with the given search
+     *
+     *  @return             : the planner after planning
+     *  @places             : the number of places of the request
+     *  @seed               : the seed of the request
+     *  @searchMode         : the search mode
+     *  @width              : the beam width
+     */
+    private static Planner plan(int places, long seed, Enums.SearchMode searchMode, int width) {
+        City city = SyntheticCity.create(Math.max(40, places * 2), seed);
+        Enums.TravelMode travelMode = seed % 2 == 0 ? Enums.TravelMode.DRIVING : Enums.TravelMode.WALKING;
+        Planner planner = SyntheticPlanner.create(city, travelMode);
+        planner.setSearchMode(searchMode);
+        planner.setBeamWidth(width);
+        planner.getPlan(SyntheticCity.createRequest(city, places, (int) (seed % 3), seed));
+        return planner;
+    }
+}
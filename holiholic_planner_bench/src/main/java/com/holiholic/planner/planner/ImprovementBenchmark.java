@@ -0,0 +1,64 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.bench.SyntheticCity;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+
+/* ImprovementBenchmark - Measure how much the neighborhood search improves the itineraries of the beam search
+ *                        For each request size and improvement time it reports the total best score and time
+ *                        (the improvement time 0 is the beam search alone)
+ *                        Arguments (all optional): requests maxPlaces width improvementTimes (comma separated, ms)
+ *
+ */
+public class ImprovementBenchmark {
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int maxPlaces = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        String[] improvementTimes = (args.length > 3 ? args[3] : "0,50,200").split(",");
+
+        System.out.printf("%6s %12s %12s %12s %8s%n", "places", "improve (ms)", "score", "time (ms)", "better");
+        for (int places = 8; places <= maxPlaces; places += 2) {
+            double[] beamScores = new double[requests];
+
+            for (String improvementTime : improvementTimes) {
+                double score = 0;
+                double time = 0;
+                int better = 0;
+
+                for (int seed = 1; seed <= requests; seed++) {
+                    long start = System.nanoTime();
+                    Planner planner = plan(places, seed, width, Long.parseLong(improvementTime));
+                    time += (System.nanoTime() - start) / 1e6;
+
+                    score += Math.max(0, planner.getBestScore());
+                    if (Long.parseLong(improvementTime) == 0) {
+                        beamScores[seed - 1] = planner.getBestScore();
+                    } else if (planner.getBestScore() > beamScores[seed - 1]) {
+                        better++;
+                    }
+                }
+                System.out.printf("%6d %12s %12.2f %12.1f %8d%n", places, improvementTime, score, time, better);
+            }
+        }
+    }
+
+    /* plan - Plan a synthetic request with the beam search followed by the neighborhood search
+     *
+     *  @return             : the planner after planning
+     *  @places             : the number of places of the request
+     *  @seed               : the seed of the request
+     *  @width              : the beam width
+     *  @improvementTime    : how long the neighborhood search runs (ms)
+     */
+    private static Planner plan(int places, long seed, int width, long improvementTime) {
+        City city = SyntheticCity.create(Math.max(40, places * 2), seed);
+        Enums.TravelMode travelMode = seed % 2 == 0 ? Enums.TravelMode.DRIVING : Enums.TravelMode.WALKING;
+        Planner planner = SyntheticPlanner.create(city, travelMode);
+        planner.setSearchMode(Enums.SearchMode.BEAM);
+        planner.setBeamWidth(width);
+        planner.setImprovementTime(improvementTime);
+        planner.getPlan(SyntheticCity.createRequest(city, places, (int) (seed % 3), seed));
+        return planner;
+    }
+}
@@ -0,0 +1,79 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.bench.SyntheticCity;
+import com.holiholic.planner.models.Place;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* PlannerBenchmark - JMH benchmark of a whole request (Planner.getPlan) on the synthetic cities
+ *                    The latency is the average time of a request, the nodes counter is the number of nodes (or
+ *                    labels) visited per millisecond, run with -prof gc for the allocation rate
+ *                    java -jar target/benchmarks.jar PlannerBenchmark -prof gc
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PlannerBenchmark {
+    @Param({"8", "12", "16", "20", "24", "30"})
+    public int places;
+
+    @Param({"IN_PLACE", "BEAM"})
+    public Enums.SearchMode searchMode;
+
+    @Param({"MIXED", "REGULAR"})
+    public SyntheticCity.OpeningHours openingHours;
+
+    @Param({"1000"})
+    public long timeLimit;
+
+    @Param({"1"})
+    public long seed;
+
+    private City city;
+    private Planner planner;
+    private List<Place> request;
+
+    /* Nodes - The nodes visited by the searches, reported per unit of time
+     *
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void createCity() {
+        city = SyntheticCity.create(Math.max(40, places * 2), seed, openingHours, SyntheticCity.DEFAULT_RESTAURANTS,
+                                    SyntheticCity.Matrix.GEOGRAPHIC);
+    }
+
+    @Setup(Level.Invocation)
+    public void createPlanner() {
+        // the planner and the places are changed by a request
+        planner = SyntheticPlanner.create(city, Enums.TravelMode.DRIVING);
+        planner.setSearchMode(searchMode);
+        planner.setTimeLimit(timeLimit);
+        request = SyntheticCity.createRequest(city, places, (int) (seed % 3), seed);
+    }
+
+    @Benchmark
+    public List<List<Place>> getPlan(Nodes nodes) {
+        List<List<Place>> itineraries = planner.getPlan(request);
+        nodes.nodes += planner.getNodesCount();
+        return itineraries;
+    }
+}
@@ -0,0 +1,66 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.bench.SyntheticCity;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+
+import java.util.concurrent.ForkJoinPool;
+
+/* PruningBenchmark - Compare the number of nodes visited by the search with each pruning bound
+ *                    For each request size the same synthetic requests are planned with every bound (on a single
+ *                    worker, so the numbers do not depend on scheduling) and the total nodes, the total time and
+ *                    how often the best score differs from the one found with the admissible bound are reported
+ *                    Arguments (all optional): requests maxPlaces
+ *
+ */
+public class PruningBenchmark {
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int maxPlaces = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        ForkJoinPool pool = new ForkJoinPool(1);
+
+        System.out.printf("%6s %12s %14s %12s %14s%n", "places", "bound", "nodes", "time (ms)", "worse scores");
+        for (int places = 6; places <= maxPlaces; places += 2) {
+            for (Enums.PruningBound bound : Enums.PruningBound.values()) {
+                long nodes = 0;
+                double time = 0;
+                int worse = 0;
+
+                for (long seed = 1; seed <= requests; seed++) {
+                    City city = SyntheticCity.create(40, seed);
+                    long start = System.nanoTime();
+                    Planner planner = plan(city, places, seed, bound, pool);
+                    time += (System.nanoTime() - start) / 1e6;
+                    Planner admissible = bound == Enums.PruningBound.ADMISSIBLE ? planner :
+                                         plan(city, places, seed, Enums.PruningBound.ADMISSIBLE, pool);
+
+                    nodes += planner.getNodesCount();
+                    if (planner.getBestScore() < admissible.getBestScore()) {
+                        worse++;
+                    }
+                }
+
+                System.out.printf("%6d %12s %14d %12.1f %14d%n", places, bound, nodes, time, worse);
+            }
+        }
+        pool.shutdown();
+    }
+
+    /* plan - Plan a synthetic request with the given bound
+     *
+     *  @return             : the planner after planning
+     *  @city               : the city
+     *  @places             : the number of places of the request
+     *  @seed               : the seed of the request
+     *  @bound              : the pruning bound
+     *  @pool               : the pool where the search is executed
+     */
+    private static Planner plan(City city, int places, long seed, Enums.PruningBound bound, ForkJoinPool pool) {
+        Enums.TravelMode travelMode = seed % 2 == 0 ? Enums.TravelMode.DRIVING : Enums.TravelMode.WALKING;
+        Planner planner = SyntheticPlanner.create(city, travelMode);
+        planner.setSearchPool(pool);
+        planner.setPruningBound(bound);
+        planner.getPlan(SyntheticCity.createRequest(city, places, (int) (seed % 3), seed));
+        return planner;
+    }
+}
@@ -0,0 +1,130 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.bench.SyntheticCity;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/* RewardsBenchmark - JMH benchmark of the storage of the rewards: the flat array indexed by the hour and the local
+ *                    indexes of the places (Planner.getReward), against the nested maps by hour and place it replaced
+ *                    The lookups read the rewards of all the pairs of places at all the hours in a random order, like
+ *                    the comparators and predictScore read them during a search, the fills store all of them
+ *                    java -jar target/benchmarks.jar RewardsBenchmark -prof gc
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RewardsBenchmark {
+    private static final int HOURS = 24;
+
+    @Param({"8", "16", "30"})
+    public int places;
+
+    @Param({"1"})
+    public long seed;
+
+    private Planner planner;
+    private double[] values;
+    private Map<Integer, Map<Integer, Map<Integer, Double>>> rewardsMap;
+    // the lookups, each one is an hour, a current place and a next place
+    private int[] hours;
+    private int[] currents;
+    private int[] nexts;
+
+    @Setup(Level.Trial)
+    public void createRewards() {
+        City city = SyntheticCity.create(Math.max(40, places * 2), seed);
+        planner = SyntheticPlanner.create(city, Enums.TravelMode.DRIVING);
+        planner.init(SyntheticCity.createRequest(city, places, (int) (seed % 3), seed));
+
+        values = new double[HOURS * places * places];
+        for (int hour = 0; hour < HOURS; hour++) {
+            for (int i = 0; i < places; i++) {
+                for (int j = 0; j < places; j++) {
+                    values[(hour * places + i) * places + j] = planner.getReward(i, j, hour * 3600);
+                }
+            }
+        }
+        rewardsMap = fillMap();
+
+        int lookups = values.length;
+        Random random = new Random(seed);
+        hours = new int[lookups];
+        currents = new int[lookups];
+        nexts = new int[lookups];
+        for (int lookup = 0; lookup < lookups; lookup++) {
+            hours[lookup] = random.nextInt(HOURS);
+            currents[lookup] = random.nextInt(places);
+            nexts[lookup] = random.nextInt(places);
+        }
+    }
+
+    @Benchmark
+    public void generateRewards() {
+        planner.generateRewards();
+    }
+
+    @Benchmark
+    public double[] fillArray() {
+        double[] rewards = new double[HOURS * places * places];
+        for (int hour = 0; hour < HOURS; hour++) {
+            for (int i = 0; i < places; i++) {
+                for (int j = 0; j < places; j++) {
+                    if (i != j) {
+                        rewards[(hour * places + i) * places + j] = values[(hour * places + i) * places + j];
+                    }
+                }
+            }
+        }
+        return rewards;
+    }
+
+    @Benchmark
+    public Map<Integer, Map<Integer, Map<Integer, Double>>> fillMap() {
+        Map<Integer, Map<Integer, Map<Integer, Double>>> rewards = new HashMap<>();
+        for (int hour = 0; hour < HOURS; hour++) {
+            Map<Integer, Map<Integer, Double>> hourRewards = new HashMap<>();
+            for (int i = 0; i < places; i++) {
+                Map<Integer, Double> placeRewards = new HashMap<>();
+                for (int j = 0; j < places; j++) {
+                    if (i != j) {
+                        placeRewards.put(j, values[(hour * places + i) * places + j]);
+                    }
+                }
+                hourRewards.put(i, placeRewards);
+            }
+            rewards.put(hour, hourRewards);
+        }
+        return rewards;
+    }
+
+    @Benchmark
+    public double readArray() {
+        double sum = 0;
+        for (int lookup = 0; lookup < hours.length; lookup++) {
+            sum += planner.getReward(currents[lookup], nexts[lookup], hours[lookup] * 3600);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double readMap() {
+        double sum = 0;
+        for (int lookup = 0; lookup < hours.length; lookup++) {
+            // the reward for staying in the same place is not stored
+            if (currents[lookup] != nexts[lookup]) {
+                sum += rewardsMap.get(hours[lookup]).get(currents[lookup]).get(nexts[lookup]);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,81 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.bench.SyntheticCity;
+import com.holiholic.planner.models.Place;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/* ScalingBenchmark - Measure how the planner search scales with the number of fork/join workers
+ *                    The same request for a fixed synthetic city is planned with 1, 2, 4 ... N workers and
+ *                    the median time is reported together with the speedup over a single worker
+ *                    Arguments (all optional): places seed maxThreads repetitions
+ *
+ */
+public class ScalingBenchmark {
+    public static void main(String[] args) {
+        int places = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int repetitions = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        City city = SyntheticCity.create(Math.max(40, places), seed);
+        double baseline = 0;
+
+        System.out.printf("places=%d seed=%d cores=%d%n", places, seed, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %12s %10s %12s%n", "threads", "median (ms)", "speedup", "efficiency");
+
+        for (int threads = 1; threads <= maxThreads; threads = nextThreads(threads, maxThreads)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            double[] times = new double[repetitions];
+
+            // warm up
+            plan(city, places, seed, pool);
+            for (int i = 0; i < repetitions; i++) {
+                times[i] = plan(city, places, seed, pool);
+            }
+            pool.shutdown();
+
+            Arrays.sort(times);
+            double median = times[repetitions / 2];
+            if (threads == 1) {
+                baseline = median;
+            }
+            System.out.printf("%8d %12.1f %10.2f %12.2f%n", threads, median, baseline / median,
+                              baseline / median / threads);
+        }
+    }
+
+    /* nextThreads - The number of threads are doubled, the last step is the maximum
+     *
+     *  @return             : the next number of threads
+     *  @threads            : the current number of threads
+     *  @maxThreads         : the maximum number of threads
+     */
+    private static int nextThreads(int threads, int maxThreads) {
+        if (threads == maxThreads) {
+            return maxThreads + 1;
+        }
+        return Math.min(threads * 2, maxThreads);
+    }
+
+    /* plan - Plan the request once
+     *
+     *  @return             : the duration in milliseconds
+     *  @city               : the city
+     *  @places             : the number of places of the request
+     *  @seed               : the seed of the request
+     *  @pool               : the pool where the search is executed
+     */
+    private static double plan(City city, int places, long seed, ForkJoinPool pool) {
+        Planner planner = SyntheticPlanner.create(city, Enums.TravelMode.DRIVING);
+        planner.setSearchPool(pool);
+
+        List<Place> request = SyntheticCity.createRequest(city, places, 0, seed);
+        long start = System.nanoTime();
+        planner.getPlan(request);
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
@@ -0,0 +1,64 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.bench.SyntheticCity;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/* SearchPartsBenchmark - JMH benchmark of the parts of a request which are not the search itself:
+ *                        the rewards generated once per request and the score predicted at each node
+ *                        The planner is initialized once, without searching, run with -prof gc for the allocation rate
+ *                        java -jar target/benchmarks.jar SearchPartsBenchmark -prof gc
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchPartsBenchmark {
+    @Param({"8", "12", "16", "20", "24", "30"})
+    public int places;
+
+    @Param({"ADMISSIBLE", "GREEDY"})
+    public Enums.PruningBound pruningBound;
+
+    @Param({"1"})
+    public long seed;
+
+    private Planner planner;
+    private SearchState state;
+    private int first;
+    private int time;
+
+    @Setup(Level.Trial)
+    public void createPlanner() {
+        City city = SyntheticCity.create(Math.max(40, places * 2), seed);
+        planner = SyntheticPlanner.create(city, Enums.TravelMode.DRIVING);
+        planner.setPruningBound(pruningBound);
+        planner.init(SyntheticCity.createRequest(city, places, (int) (seed % 3), seed));
+
+        // the first place which can be visited in the planning day
+        for (first = 0; first < places; first++) {
+            state = planner.createState(first);
+            time = state.plannedTimes[first];
+            if (time != SearchState.NOT_PLANNED) {
+                return;
+            }
+        }
+        throw new IllegalStateException("No place of the request can be visited");
+    }
+
+    @Benchmark
+    public void generateRewards() {
+        planner.generateRewards();
+    }
+
+    @Benchmark
+    public double predictScore() {
+        return planner.predictScore(state, first, time);
+    }
+}
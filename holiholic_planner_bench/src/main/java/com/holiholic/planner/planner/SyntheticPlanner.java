@@ -0,0 +1,36 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.bench.SyntheticCity;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/* SyntheticPlanner - Create the planners used by the benchmarks on the synthetic cities
+ *                    It lives next to the Planner because its constructor and setters are package-private,
+ *                    the benchmarks only set what they compare on top of it
+ *
+ */
+final class SyntheticPlanner {
+    private static final Logger LOGGER = Logger.getLogger(Planner.class.getName());
+
+    private SyntheticPlanner() {
+
+    }
+
+    /* create - Create a planner for the planning day of the synthetic cities (0900 - 2000) starting in their center
+     *
+     *  @return             : the planner
+     *  @city               : the city
+     *  @travelMode         : the travel mode of the user
+     */
+    static Planner create(City city, Enums.TravelMode travelMode) {
+        Planner planner = new Planner(city, SyntheticCity.createTimeFrame("0900", "2000"), travelMode);
+        // the planner logs every new solution, which is not what we want to measure
+        LOGGER.setLevel(Level.WARNING);
+        planner.setHeuristicValue(0.5);
+        planner.setStart(SyntheticCity.createStart());
+        return planner;
+    }
+}
@@ -0,0 +1,61 @@
+package com.holiholic.planner.planner;
+
+import com.holiholic.planner.bench.SyntheticCity;
+import com.holiholic.planner.travel.City;
+import com.holiholic.planner.utils.Enums;
+
+/* WarmStartBenchmark - Measure the in place search with and without the greedy dives of the warm start
+ *                      For each request size it reports the time to the first itinerary, the number of nodes,
+ *                      the total time and the total best score
+ *                      Arguments (all optional): requests maxPlaces timeLimit (ms)
+ *
+ */
+public class WarmStartBenchmark {
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int maxPlaces = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        long timeLimit = args.length > 2 ? Long.parseLong(args[2]) : 5000;
+
+        System.out.printf("%6s %10s %16s %14s %12s %12s%n", "places", "warm start", "first (ms)", "nodes", "time (ms)",
+                          "score");
+        for (int places = 6; places <= maxPlaces; places += 2) {
+            for (boolean warmStart : new boolean[]{false, true}) {
+                double firstSolution = 0;
+                long nodes = 0;
+                double time = 0;
+                double score = 0;
+
+                for (int seed = 1; seed <= requests; seed++) {
+                    long start = System.nanoTime();
+                    Planner planner = plan(places, seed, warmStart, timeLimit);
+                    time += (System.nanoTime() - start) / 1e6;
+
+                    firstSolution += Math.max(0, planner.getTimeToFirstSolution()) / 1e6;
+                    nodes += planner.getNodesCount();
+                    score += Math.max(0, planner.getBestScore());
+                }
+                System.out.printf("%6d %10s %16.3f %14d %12.1f %12.2f%n", places, warmStart, firstSolution / requests,
+                                  nodes, time, score);
+            }
+        }
+    }
+
+    /* plan - Plan a synthetic request with the in place search
+     *
+     *  @return             : the planner after planning
+     *  @places             : the number of places of the request
+     *  @seed               : the seed of the request
+     *  @warmStart          : if the search starts with the greedy dives
+     *  @timeLimit          : how long the search can run (ms)
+     */
+    private static Planner plan(int places, long seed, boolean warmStart, long timeLimit) {
+        City city = SyntheticCity.create(Math.max(40, places * 2), seed);
+        Enums.TravelMode travelMode = seed % 2 == 0 ? Enums.TravelMode.DRIVING : Enums.TravelMode.WALKING;
+        Planner planner = SyntheticPlanner.create(city, travelMode);
+        planner.setSearchMode(Enums.SearchMode.IN_PLACE);
+        planner.setWarmStart(warmStart);
+        planner.setTimeLimit(timeLimit);
+        planner.getPlan(SyntheticCity.createRequest(city, places, (int) (seed % 3), seed));
+        return planner;
+    }
+}